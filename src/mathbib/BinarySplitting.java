@@ -0,0 +1,205 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Evaluates hypergeometric-like series
+ *
+ * S = sum_{n=0}^{N-1} a(n)/b(n) * (p(0)...p(n)) / (q(0)...q(n))
+ *
+ * with integer terms by binary splitting. The sum is built as one fraction
+ * from balanced products, so the expensive multiplications are done on
+ * numbers of similar size and the cost is nearly linear in the number of
+ * digits. Subclasses define the terms, {@code a(n)} and {@code b(n)} default
+ * to 1.
+ */
+abstract class BinarySplitting {
+
+    abstract BigInteger p(long n);
+
+    abstract BigInteger q(long n);
+
+    BigInteger a(long n) {
+        return BigInteger.ONE;
+    }
+
+    BigInteger b(long n) {
+        return BigInteger.ONE;
+    }
+
+    /**
+     * Returns the sum of the first {@code terms} terms, rounded to
+     * {@code scale} with {@link RoundingMode#HALF_EVEN}.
+     *
+     * @param terms
+     * @param scale
+     * @return {@code S}
+     */
+    BigDecimal sum(long terms, int scale) {
+        BigInteger[] r = split(0, terms);
+        return new BigDecimal(r[3]).divide(new BigDecimal(r[1].multiply(r[2])), scale, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Returns {P, Q, B, T} for the terms {@code from <= n < to}, where the partial
+     * sum is T / (B Q).
+     */
+    private BigInteger[] split(long from, long to) {
+        if (to - from == 1) {
+            BigInteger p = p(from);
+            return new BigInteger[]{p, q(from), b(from), a(from).multiply(p)};
+        }
+        long mid = (from + to) >>> 1;
+        BigInteger[] l = split(from, mid);
+        BigInteger[] r = split(mid, to);
+        // T = B_r Q_r T_l + B_l P_l T_r
+        BigInteger t = r[2].multiply(r[1]).multiply(l[3]).add(l[2].multiply(l[0]).multiply(r[3]));
+        return new BigInteger[]{l[0].multiply(r[0]), l[1].multiply(r[1]), l[2].multiply(r[2]), t};
+    }
+
+    /**
+     * Returns the number of terms of the exponential series until the
+     * absolute value of the term is below 10^-digits, if the argument is at
+     * most 10^{@code log10x} in absolute value.
+     *
+     * @param log10x
+     * @param digits
+     * @return number of terms
+     */
+    static long expTerms(double log10x, int digits) {
+        double log10term = 0;
+        long n = 0;
+        while (log10term > -digits - 1) {
+            n++;
+            log10term += log10x - Math.log10(n);
+        }
+        return n + 1;
+    }
+
+    /**
+     * The series of exp(x) for a rational {@code x = numerator / denominator}.
+     */
+    static class Exp extends BinarySplitting {
+
+        private final BigInteger numerator;
+        private final BigInteger denominator;
+
+        Exp(BigInteger numerator, BigInteger denominator) {
+            this.numerator = numerator;
+            this.denominator = denominator;
+        }
+
+        @Override
+        BigInteger p(long n) {
+            return n == 0 ? BigInteger.ONE : numerator;
+        }
+
+        @Override
+        BigInteger q(long n) {
+            return n == 0 ? BigInteger.ONE : denominator.multiply(BigInteger.valueOf(n));
+        }
+    }
+
+    /**
+     * The series of sin(x) = sum (-1)^n x^(2n+1) / (2n+1)! for a rational
+     * {@code x = numerator / denominator}.
+     */
+    static class Sin extends BinarySplitting {
+
+        private final BigInteger numerator;
+        private final BigInteger denominator;
+        private final BigInteger numerator2;
+        private final BigInteger denominator2;
+
+        Sin(BigInteger numerator, BigInteger denominator) {
+            this.numerator = numerator;
+            this.denominator = denominator;
+            this.numerator2 = numerator.multiply(numerator).negate();
+            this.denominator2 = denominator.multiply(denominator);
+        }
+
+        @Override
+        BigInteger p(long n) {
+            return n == 0 ? numerator : numerator2;
+        }
+
+        @Override
+        BigInteger q(long n) {
+            return n == 0 ? denominator : denominator2.multiply(BigInteger.valueOf(2 * n * (2 * n + 1)));
+        }
+    }
+
+    /**
+     * The series of atanh(1/m) = sum 1 / ((2n+1) m^(2n+1)).
+     */
+    static class Atanh extends BinarySplitting {
+
+        private final BigInteger m;
+        private final BigInteger m2;
+
+        Atanh(long m) {
+            this.m = BigInteger.valueOf(m);
+            this.m2 = this.m.multiply(this.m);
+        }
+
+        @Override
+        BigInteger p(long n) {
+            return BigInteger.ONE;
+        }
+
+        @Override
+        BigInteger q(long n) {
+            return n == 0 ? m : m2;
+        }
+
+        @Override
+        BigInteger b(long n) {
+            return BigInteger.valueOf(2 * n + 1);
+        }
+
+        /**
+         * Returns the number of terms for an error below 10^-digits.
+         */
+        long terms(int digits) {
+            return (long) Math.ceil((digits + 1) / (2 * Math.log10(m.doubleValue()))) + 1;
+        }
+    }
+
+    /**
+     * The Chudnovsky series sum (-1)^n (6n)! (13591409 + 545140134 n) /
+     * ((3n)! (n!)^3 640320^(3n)), so pi = 426880 sqrt(10005) / S. Every term
+     * adds about 14 digits.
+     */
+    static class Chudnovsky extends BinarySplitting {
+
+        // 640320^3 / 24
+        private static final BigInteger C3OVER24 = BigInteger.valueOf(10939058860032000L);
+
+        @Override
+        BigInteger p(long n) {
+            if (n == 0) {
+                return BigInteger.ONE;
+            }
+            return BigInteger.valueOf(-(6 * n - 5)).multiply(BigInteger.valueOf((2 * n - 1) * (6 * n - 1)));
+        }
+
+        @Override
+        BigInteger q(long n) {
+            if (n == 0) {
+                return BigInteger.ONE;
+            }
+            return BigInteger.valueOf(n).pow(3).multiply(C3OVER24);
+        }
+
+        @Override
+        BigInteger a(long n) {
+            return BigInteger.valueOf(545140134).multiply(BigInteger.valueOf(n)).add(BigInteger.valueOf(13591409));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Mathematical constants to any scale. Every constant keeps the value with
+ * the highest precision computed so far, lower scales are served by rounding
+ * this value. A request for more digits than cached at least doubles the
+ * cached precision, so a growing sequence of requests costs only about twice
+ * the last computation. The constants can be used from several threads.
+ */
+public enum Constant {
+
+    /**
+     * pi, by the Chudnovsky series.
+     */
+    PI {
+        @Override
+        BigDecimal compute(int scale) {
+            BinarySplitting series = new BinarySplitting.Chudnovsky();
+            int s = scale + 5;
+            BigDecimal sum = series.sum(s / 14 + 2, s);
+            MathContext mc = new MathContext(s + 1, RoundingMode.HALF_EVEN);
+            BigDecimal root = ExtDecimal.sqrt(BigDecimal.valueOf(10005), mc);
+            return root.multiply(BigDecimal.valueOf(426880)).divide(sum, s, RoundingMode.HALF_EVEN);
+        }
+    },
+    /**
+     * Euler's number e = sum 1/n!.
+     */
+    E {
+        @Override
+        BigDecimal compute(int scale) {
+            BinarySplitting series = new BinarySplitting.Exp(BigInteger.ONE, BigInteger.ONE);
+            return series.sum(BinarySplitting.expTerms(0, scale + 3), scale + 3);
+        }
+    },
+    /**
+     * ln(2) = 18 atanh(1/26) - 2 atanh(1/4801) + 8 atanh(1/8749).
+     */
+    LN2 {
+        @Override
+        BigDecimal compute(int scale) {
+            int s = scale + 3;
+            return atanh(26, s).multiply(BigDecimal.valueOf(18))
+                    .subtract(atanh(4801, s).multiply(BigDecimal.valueOf(2)))
+                    .add(atanh(8749, s).multiply(BigDecimal.valueOf(8)));
+        }
+    },
+    /**
+     * ln(10) = 3 ln(2) + 2 atanh(1/9).
+     */
+    LN10 {
+        @Override
+        BigDecimal compute(int scale) {
+            int s = scale + 3;
+            return LN2.toBigDecimal(s).multiply(BigDecimal.valueOf(3))
+                    .add(atanh(9, s).multiply(BigDecimal.valueOf(2)));
+        }
+    },
+    /**
+     * The Euler-Mascheroni constant gamma = U/V - ln(n) by the Brent-McMillan
+     * algorithm, with V = sum (n^k/k!)^2 and U = sum (n^k/k!)^2 H_k. The
+     * error of the formula is below pi exp(-4n).
+     */
+    GAMMA {
+        @Override
+        BigDecimal compute(int scale) {
+            long n = (long) Math.ceil((scale + 2) * Math.log(10) / 4) + 1;
+            int s = scale + 10 + Integer.toString(scale).length();
+            BigInteger n2 = BigInteger.valueOf(n * n);
+            // a = (n^k/k!)^2 and u = a H_k in units of 10^-s, the truncations
+            // are relative errors below 10^-s per step
+            BigInteger a = ExtDecimal.powerOfTen(s);
+            BigInteger u = BigInteger.ZERO;
+            BigInteger sumA = a;
+            BigInteger sumU = u;
+            for (long k = 1; k <= n || u.signum() > 0; k++) {
+                BigInteger k2 = BigInteger.valueOf(k * k);
+                u = u.add(a.divide(BigInteger.valueOf(k))).multiply(n2).divide(k2);
+                a = a.multiply(n2).divide(k2);
+                sumA = sumA.add(a);
+                sumU = sumU.add(u);
+            }
+            return new BigDecimal(sumU).divide(new BigDecimal(sumA), s, RoundingMode.HALF_EVEN)
+                    .subtract(ExtDecimal.ln(BigDecimal.valueOf(n), s));
+        }
+    };
+    /**
+     * Number of digits cached beyond the largest requested scale, so the
+     * rounded values are correct up to one unit of the last place.
+     */
+    private static final int GUARD = 10;
+    private volatile BigDecimal value;
+
+    /**
+     * Returns the constant with an error below 10^-(scale - 1) and a scale of
+     * at least {@code scale}.
+     *
+     * @param scale
+     * @return the value of the constant
+     */
+    abstract BigDecimal compute(int scale);
+
+    /**
+     * Returns the constant with the scale {@code scale}, rounded to the
+     * nearest value with an error below one unit of the last place.
+     *
+     * @param scale
+     * @return the constant as {@code BigDecimal}
+     */
+    public BigDecimal toBigDecimal(int scale) {
+        BigDecimal v = value;
+        if (v == null || v.scale() < scale + GUARD) {
+            synchronized (this) {
+                v = value;
+                if (v == null || v.scale() < scale + GUARD) {
+                    int s = Math.max(scale + GUARD, v == null ? 0 : 2 * v.scale());
+                    v = compute(s + 1).setScale(s, RoundingMode.HALF_EVEN);
+                    value = v;
+                }
+            }
+        }
+        return v.setScale(scale, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Returns the constant with the scale {@code scale}, see
+     * {@link #toBigDecimal(int)}.
+     *
+     * @param scale
+     * @return the constant
+     */
+    public ExtDecimal value(int scale) {
+        return new ExtDecimal(toBigDecimal(scale));
+    }
+
+    /**
+     * Returns the highest scale computed so far, 0 if the constant was not
+     * used yet.
+     *
+     * @return cached scale
+     */
+    public int cachedScale() {
+        BigDecimal v = value;
+        return v == null ? 0 : v.scale() - GUARD;
+    }
+
+    private static BigDecimal atanh(long m, int scale) {
+        BinarySplitting.Atanh series = new BinarySplitting.Atanh(m);
+        return series.sum(series.terms(scale), scale);
+    }
+}
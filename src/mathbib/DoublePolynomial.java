@@ -0,0 +1,287 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+
+/**
+ * A polynomial with {@code double} coefficients. It is the fast counterpart
+ * of {@link Polynomial} for evaluations where double precision is enough,
+ * for example plotting. The evaluation methods do not allocate any objects.
+ */
+public class DoublePolynomial extends VectorSpaceElement {
+
+    private final double[] coefficients;
+    private final int degree;
+    public static final DoublePolynomial ZERO = new DoublePolynomial(0);
+
+    /**
+     * Constructs the polynomial using the set of coefficients.
+     *
+     * @param coeff
+     */
+    public DoublePolynomial(double... coeff) {
+        coefficients = coeff.clone();
+        degree = degree(coefficients);
+    }
+
+    /**
+     * Constructs the polynomial from a {@code Polynomial}. Each coefficient is
+     * rounded to the nearest {@code double}, see
+     * {@link #isExactlyRepresentable(Polynomial)}.
+     *
+     * @param p
+     */
+    public DoublePolynomial(Polynomial p) {
+        ExtDecimal[] coeff = p.getCoefficients();
+        coefficients = new double[coeff.length];
+        for (int i = 0; i < coeff.length; i++) {
+            coefficients[i] = coeff[i].doubleValue();
+        }
+        degree = degree(coefficients);
+    }
+
+    /**
+     * Returns true if every coefficient of {@code p} is a {@code double}, so
+     * the conversion {@code new DoublePolynomial(p).toPolynomial()} is
+     * lossless.
+     *
+     * @param p
+     * @return {@code true} if no coefficient is rounded
+     */
+    public static boolean isExactlyRepresentable(Polynomial p) {
+        ExtDecimal[] coeff = p.getCoefficients();
+        for (int i = 0; i < coeff.length; i++) {
+            BigDecimal value = coeff[i].toBigDecimal();
+            if (value == null) {
+                return false;
+            }
+            double d = value.doubleValue();
+            if (Double.isInfinite(d) || new BigDecimal(d).compareTo(value) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts this polynomial to a {@code Polynomial}. This conversion is
+     * always exact.
+     *
+     * @return {@code this} with {@code ExtDecimal} coefficients
+     * @throws NumberFormatException if a coefficient is infinite or NaN.
+     */
+    public Polynomial toPolynomial() {
+        return new Polynomial(coefficients);
+    }
+
+    /**
+     * Returns a copy of the coefficients of the polynomial
+     *
+     * @return {@code this as array}
+     */
+    public double[] getCoefficients() {
+        return coefficients.clone();
+    }
+
+    /**
+     * Returns the degree of the polynomial. If the Polynomial is zero the
+     * function returns -1.
+     *
+     * @return {@code deg(this)}
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    private static int degree(double[] coefficients) {
+        for (int i = coefficients.length - 1; i >= 0; i--) {
+            if (coefficients[i] != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of the polynomial for a defined value of x using
+     * Horner's method.
+     *
+     * @param x
+     * @return {@code this(x)}
+     */
+    public double valueFor(double x) {
+        double y = 0;
+        for (int i = getDegree(); i >= 0; i--) {
+            y = y * x + coefficients[i];
+        }
+        return y;
+    }
+
+    /**
+     * Returns the value of the polynomial for a defined value of x using
+     * Estrin's scheme with blocks of four coefficients. The blocks are
+     * independent of each other, so the processor can evaluate them in
+     * parallel. This pays off for higher degrees. The rounding errors differ
+     * slightly from {@link #valueFor(double)}.
+     *
+     * @param x
+     * @return {@code this(x)}
+     */
+    public double valueForEstrin(double x) {
+        int n = getDegree() + 1;
+        double x2 = x * x;
+        double x4 = x2 * x2;
+        int blocks = n / 4;
+        double y = 0;
+        // Rest at the top which does not fill a whole block
+        for (int i = n - 1; i >= 4 * blocks; i--) {
+            y = y * x + coefficients[i];
+        }
+        for (int k = blocks - 1; k >= 0; k--) {
+            int i = 4 * k;
+            double low = coefficients[i] + coefficients[i + 1] * x;
+            double high = coefficients[i + 2] + coefficients[i + 3] * x;
+            y = y * x4 + (low + high * x2);
+        }
+        return y;
+    }
+
+    /**
+     * Evaluates the polynomial for every value of {@code xs} and writes the
+     * results into {@code out}. The loop over the points is the inner loop, so
+     * it can be vectorized by the JIT compiler.
+     *
+     * @param xs points
+     * @param out array for the values, at least as long as {@code xs}
+     */
+    public void valueFor(double[] xs, double[] out) {
+        if (out.length < xs.length) {
+            throw new IllegalArgumentException("Output array too short");
+        }
+        int n = xs.length;
+        int deg = getDegree();
+        if (deg < 0) {
+            for (int j = 0; j < n; j++) {
+                out[j] = 0;
+            }
+            return;
+        }
+        double top = coefficients[deg];
+        for (int j = 0; j < n; j++) {
+            out[j] = top;
+        }
+        for (int i = deg - 1; i >= 0; i--) {
+            double c = coefficients[i];
+            for (int j = 0; j < n; j++) {
+                out[j] = out[j] * xs[j] + c;
+            }
+        }
+    }
+
+    /**
+     * Returns the derivation of the polynomial
+     *
+     * @return {@code Deriv(this)}
+     */
+    public DoublePolynomial getDerivation() {
+        int deg = getDegree();
+        if (deg > 0) {
+            double[] c = new double[deg];
+            for (int i = 1; i <= deg; i++) {
+                c[i - 1] = coefficients[i] * i;
+            }
+            return new DoublePolynomial(c);
+        } else {
+            return DoublePolynomial.ZERO;
+        }
+    }
+
+    @Override
+    public VectorSpaceElement add(VectorSpaceElement vse) {
+        return add((DoublePolynomial) vse);
+    }
+
+    /**
+     * Returns a {@code DoublePolynomial} whose value is
+     * {@code (this + augend)}.
+     *
+     * @param augend value to be added to this {@code DoublePolynomial}.
+     * @return {@code this + augend}.
+     */
+    public DoublePolynomial add(DoublePolynomial augend) {
+        double[] c = new double[Math.max(Math.max(getDegree(), augend.getDegree()), 0) + 1];
+        for (int i = 0; i <= getDegree(); i++) {
+            c[i] += coefficients[i];
+        }
+        for (int i = 0; i <= augend.getDegree(); i++) {
+            c[i] += augend.coefficients[i];
+        }
+        return new DoublePolynomial(c);
+    }
+
+    @Override
+    public VectorSpaceElement subtract(VectorSpaceElement vse) {
+        return subtract((DoublePolynomial) vse);
+    }
+
+    /**
+     * Returns a {@code DoublePolynomial} whose value is
+     * {@code (this - subtrahend)}.
+     *
+     * @param subtrahend value to be subtracted from this
+     * {@code DoublePolynomial}.
+     * @return {@code this - subtrahend}.
+     */
+    public DoublePolynomial subtract(DoublePolynomial subtrahend) {
+        double[] c = new double[Math.max(Math.max(getDegree(), subtrahend.getDegree()), 0) + 1];
+        for (int i = 0; i <= getDegree(); i++) {
+            c[i] += coefficients[i];
+        }
+        for (int i = 0; i <= subtrahend.getDegree(); i++) {
+            c[i] -= subtrahend.coefficients[i];
+        }
+        return new DoublePolynomial(c);
+    }
+
+    @Override
+    public VectorSpaceElement multiply(VectorSpaceElement vse) {
+        return multiply((DoublePolynomial) vse);
+    }
+
+    /**
+     * Returns a {@code DoublePolynomial} whose value is
+     * {@code (this * multiplicand)}.
+     *
+     * @param multiplicand value to be multiplied with this
+     * {@code DoublePolynomial}.
+     * @return {@code this * multiplicand}.
+     */
+    public DoublePolynomial multiply(DoublePolynomial multiplicand) {
+        int deg = getDegree();
+        int mdeg = multiplicand.getDegree();
+        if (deg >= 0 && mdeg >= 0) {
+            double[] c = new double[deg + mdeg + 1];
+            for (int i = 0; i <= deg; i++) {
+                double a = coefficients[i];
+                for (int j = 0; j <= mdeg; j++) {
+                    c[i + j] += a * multiplicand.coefficients[j];
+                }
+            }
+            return new DoublePolynomial(c);
+        } else {
+            return DoublePolynomial.ZERO;
+        }
+    }
+
+    public String toString(String var) {
+        return toPolynomial().toString(var);
+    }
+
+    @Override
+    public String toString() {
+        return toString("x");
+    }
+}
@@ -5,6 +5,7 @@
 package mathbib;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 
@@ -35,7 +36,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * The value of a number 0- almost equal to 0 but negative.
      *
      */
-    public static final ExtDecimal NEGATIVEZERO = new ExtDecimal(Type.POSITIVEZERO);
+    public static final ExtDecimal NEGATIVEZERO = new ExtDecimal(Type.NEGATIVEZERO);
     /**
      * The value 1, with a scale of 0.
      *
@@ -62,15 +63,42 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public static final ExtDecimal HALF = new ExtDecimal(0.5);
     /**
-     * The value of pi, with a scale of 200.
+     * Number of cached powers of 5 and 10, see {@link #powerOfTen(int)}.
+     */
+    static final int POWERCACHESIZE = 1024;
+    private static final BigInteger[] POWERSOFTEN = new BigInteger[POWERCACHESIZE];
+    private static final BigInteger[] POWERSOFFIVE = new BigInteger[POWERCACHESIZE];
+    /**
+     * 10^0 to 10^18 for the compact arithmetic.
+     */
+    private static final long[] LONGPOWERSOFTEN = {1L, 10L, 100L, 1000L, 10000L, 100000L,
+        1000000L, 10000000L, 100000000L, 1000000000L, 10000000000L, 100000000000L,
+        1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L,
+        10000000000000000L, 100000000000000000L, 1000000000000000000L};
+    /**
+     * Largest denominator b of a power x^(a/b) whose root is computed by
+     * Newton's method in {@link #pow(ExtDecimal, int, RoundingMode)}. Other
+     * powers go over exp and ln.
+     */
+    static final int ROOTLIMIT = 16;
+    /**
+     * Largest numerator a of a power x^(a/b) computed from the root.
+     */
+    static final int ROOTPOWERLIMIT = 1024;
+    /**
+     * The value of pi, with a scale of 50.
      *
+     * @deprecated use {@link #pi()}, or {@link Constant#PI} for any scale
      */
-    public static final ExtDecimal PI = new ExtDecimal("3.14159265358979323846264338327950288419716939937510582097494459230781640628620899862803482534211706798214808651328230664709384460955058223172535940812848111745028410270193852110555964462294895493038196");
+    @Deprecated
+    public static final ExtDecimal PI = new ExtDecimal("3.14159265358979323846264338327950288419716939937511");
     /**
-     * The value of e, with a scale of 1105.
+     * The value of e, with a scale of 50.
      *
+     * @deprecated use {@link #e()}, or {@link Constant#E} for any scale
      */
-    public static final ExtDecimal E = new ExtDecimal("2.7182818284590452353602874713526624977572470936999595749669676277240766303535475945713821785251664274274663919320030599218174135966290435729003342952605956307381323286279434907632338298807531952510190115738341879307021540891499348841675092447614606680822648001684774118537423454424371075390777449920695517027618386062613313845830007520449338265602976067371132007093287091274437470472306969772093101416928368190255151086574637721112523897844250569536967707854499699679468644549059879316368892300987931277361782154249992295763514822082698951936680331825288693984964651058209392398294887933203625094431173012381970684161403970198376793206832823764648042953118023287825098194558153017567173613320698112509961818815930416903515988885193458072738667385894228792284998920868058257492796104841984443634632449684875602336248270419786232090021609902353043699418491463140934317381436405462531520961836908887070167683964243781405927145635490613031072085103837505101157477041718986106873969655212671546889570350354021234078498193343210681701210056278802351930332247450158539047304199577770935036604169973297250886876966");
+    @Deprecated
+    public static final ExtDecimal E = new ExtDecimal("2.71828182845904523536028747135266249775724709369996");
     /**
      * A number INF bigger than every real number
      *
@@ -82,16 +110,56 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public static final ExtDecimal NEGATIVEINFINITY = new ExtDecimal(Type.NEGATIVEINFINITY);
     /**
-     * Contains the number in form of a BigDecimal object.
+     * Contains the number in form of a BigDecimal object. Results of the
+     * compact arithmetic create it on first use, see {@link #content()}.
      *
      */
     private BigDecimal content;
+    /**
+     * Compact form of numbers whose unscaled value is below 2^127 in absolute
+     * value: the unscaled value as 128 bit two's complement number
+     * {@code high:low} and the scale. {@code add}, {@code subtract},
+     * {@code multiply} and {@code compareTo} work on these words as long as
+     * the results fit and use {@code BigDecimal} otherwise.
+     */
+    private final boolean compact;
+    private final long high;
+    private final long low;
+    private final int compactScale;
 
     public enum Type {
 
         NUMBER, POSITIVEZERO, NEGATIVEZERO, INFINITY, NEGATIVEINFINITY
     };
     private Type type = Type.NUMBER;
+    // Dispatch tables for the special values, indexed by Type.ordinal().
+    // The results are the shared constants, so no special value allocates.
+    /**
+     * Result codes of the dispatch tables.
+     */
+    private static final byte R_THIS = 0, R_OTHER = 1, R_ZERO = 2, R_POSITIVEZERO = 3,
+            R_NEGATIVEZERO = 4, R_INFINITY = 5, R_NEGATIVEINFINITY = 6, R_UNDEFINED = 7;
+    /**
+     * {@code ADD[this][augend]}, the entry [NUMBER][NUMBER] is never used.
+     */
+    private static final byte[][] ADD = {
+        // NUMBER, 0+, 0-, INF, -INF
+        {R_THIS, R_THIS, R_THIS, R_INFINITY, R_NEGATIVEINFINITY},
+        {R_OTHER, R_POSITIVEZERO, R_ZERO, R_INFINITY, R_NEGATIVEINFINITY},
+        {R_OTHER, R_ZERO, R_NEGATIVEZERO, R_INFINITY, R_NEGATIVEINFINITY},
+        {R_INFINITY, R_INFINITY, R_INFINITY, R_INFINITY, R_UNDEFINED},
+        {R_NEGATIVEINFINITY, R_NEGATIVEINFINITY, R_NEGATIVEINFINITY, R_UNDEFINED, R_NEGATIVEINFINITY}
+    };
+    /**
+     * {@code NEGATE[this]} and {@code ABS[this]} for the special values.
+     */
+    private static final byte[] NEGATE = {R_THIS, R_NEGATIVEZERO, R_POSITIVEZERO, R_NEGATIVEINFINITY, R_INFINITY};
+    private static final byte[] ABS = {R_THIS, R_POSITIVEZERO, R_POSITIVEZERO, R_INFINITY, R_INFINITY};
+    /**
+     * Position of the special values in the order -INF < x < 0- < 0 < 0+ < y <
+     * INF with x < 0 < y. Numbers get 1, 3 or 5 by their sign.
+     */
+    private static final byte[] RANK = {3, 4, 2, 6, 0};
 
     // Constructors
     /**
@@ -129,7 +197,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * @throws NumberFormatException if {@code val} is infinite or NaN.
      */
     public ExtDecimal(double val) {
-        content = new BigDecimal(val);
+        this(new BigDecimal(val));
     }
 
     /**
@@ -139,6 +207,29 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal(BigDecimal val) {
         content = val;
+        BigInteger unscaled = val == null ? null : val.unscaledValue();
+        compact = unscaled != null && unscaled.bitLength() < 127;
+        if (compact) {
+            low = unscaled.longValue();
+            high = unscaled.bitLength() < 64 ? low >> 63 : unscaled.shiftRight(64).longValue();
+            compactScale = val.scale();
+        } else {
+            low = 0;
+            high = 0;
+            compactScale = 0;
+        }
+    }
+
+    /**
+     * Constructs a number from its compact form, the {@code BigDecimal} is
+     * created when needed.
+     */
+    private ExtDecimal(long high, long low, int scale) {
+        content = null;
+        compact = true;
+        this.high = high;
+        this.low = low;
+        compactScale = scale;
     }
 
     /**
@@ -148,6 +239,10 @@ public class ExtDecimal extends VectorSpaceElement {
     public ExtDecimal(Type specialtype) {
         content = null;
         type = specialtype;
+        compact = false;
+        high = 0;
+        low = 0;
+        compactScale = 0;
     }
 
     /**
@@ -227,7 +322,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * representation of a {@code ExtDecimal}.
      */
     public ExtDecimal(String val) {
-        content = new BigDecimal(val);
+        this(new BigDecimal(val));
     }
 
     // Static Factory Methods
@@ -287,7 +382,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * @see #setScale(int, RoundingMode)
      */
     public ExtDecimal setScale(int newScale) {
-        return new ExtDecimal(content.setScale(newScale));
+        return new ExtDecimal(content().setScale(newScale));
     }
 
     /**
@@ -315,7 +410,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * @see RoundingMode
      */
     public ExtDecimal setScale(int newScale, RoundingMode roundingMode) {
-        return new ExtDecimal(content.setScale(newScale, roundingMode));
+        return new ExtDecimal(content().setScale(newScale, roundingMode));
     }
 
     /**
@@ -355,7 +450,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * @see #ROUND_UNNECESSARY
      */
     public ExtDecimal setScale(int newScale, int roundingMode) {
-        return new ExtDecimal(content.setScale(newScale, roundingMode));
+        return new ExtDecimal(content().setScale(newScale, roundingMode));
     }
 
     /**
@@ -367,7 +462,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * <code>byte</code>.
      */
     public byte byteValue() {
-        return content.byteValue();
+        return content().byteValue();
     }
 
     /**
@@ -381,7 +476,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * part, or will not fit in a {@code byte}.
      */
     public byte byteValueExact() {
-        return content.byteValueExact();
+        return content().byteValueExact();
     }
 
     /**
@@ -400,7 +495,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * @return this {@code BigDecimal} converted to an {@code int}.
      */
     public int intValue() {
-        return content.intValue();
+        return content().intValue();
     }
 
     /**
@@ -414,7 +509,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * part, or will not fit in an {@code int}.
      */
     public int intValueExact() {
-        return content.intValueExact();
+        return content().intValueExact();
     }
 
     /**
@@ -432,7 +527,7 @@ public class ExtDecimal extends VectorSpaceElement {
      * @return this {@code ExtDecimal} converted to a {@code double}.
      */
     public double doubleValue() {
-        return content.doubleValue();
+        return content().doubleValue();
     }
 
     /**
@@ -441,7 +536,62 @@ public class ExtDecimal extends VectorSpaceElement {
      * @return this {@code ExtDecimal} converted to a {@code BigDecimal}.
      */
     public BigDecimal toBigDecimal() {
-        return content;
+        return content();
+    }
+
+    /**
+     * Returns {@code content}, a number in compact form gets it here.
+     */
+    private BigDecimal content() {
+        BigDecimal c = content;
+        if (c == null && compact) {
+            if (high == low >> 63) {
+                c = BigDecimal.valueOf(low, compactScale);
+            } else {
+                byte[] bytes = new byte[16];
+                for (int i = 0; i < 8; i++) {
+                    bytes[15 - i] = (byte) (low >>> (8 * i));
+                    bytes[7 - i] = (byte) (high >>> (8 * i));
+                }
+                c = new BigDecimal(new BigInteger(bytes), compactScale);
+            }
+            // BigDecimal is immutable, so a race only creates it twice
+            content = c;
+        }
+        return c;
+    }
+
+    /**
+     * Returns true if the number has the compact form, see
+     * {@link #compactHigh()}.
+     */
+    boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * The upper word of the unscaled value in compact form.
+     */
+    long compactHigh() {
+        return high;
+    }
+
+    /**
+     * The lower word of the unscaled value in compact form.
+     */
+    long compactLow() {
+        return low;
+    }
+
+    /**
+     * The signum of a number, without creating the {@code BigDecimal}.
+     */
+    private int signumNumber() {
+        if (compact) {
+            return high < 0 ? -1 : (high | low) == 0 ? 0 : 1;
+        } else {
+            return content().signum();
+        }
     }
 
     /**
@@ -455,17 +605,9 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal abs() {
         if (type == Type.NUMBER) {
-            return new ExtDecimal(content.abs());
-        } else if (type == Type.POSITIVEZERO) {
-            return new ExtDecimal(Type.POSITIVEZERO);
-        } else if (type == Type.NEGATIVEZERO) {
-            return new ExtDecimal(Type.POSITIVEZERO);
-        } else if (type == Type.INFINITY) {
-            return new ExtDecimal(Type.INFINITY);
-        } else if (type == Type.NEGATIVEINFINITY) {
-            return new ExtDecimal(Type.INFINITY);
+            return signumNumber() >= 0 ? this : negate();
         } else {
-            throw new UnsupportedOperationException("Unknown type");
+            return result(ABS[type.ordinal()], null);
         }
     }
 
@@ -495,17 +637,9 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal abs(MathContext mc) {
         if (type == Type.NUMBER) {
-            return new ExtDecimal(content.abs(mc));
-        } else if (type == Type.POSITIVEZERO) {
-            return new ExtDecimal(Type.POSITIVEZERO);
-        } else if (type == Type.NEGATIVEZERO) {
-            return new ExtDecimal(Type.POSITIVEZERO);
-        } else if (type == Type.INFINITY) {
-            return new ExtDecimal(Type.INFINITY);
-        } else if (type == Type.NEGATIVEINFINITY) {
-            return new ExtDecimal(Type.INFINITY);
+            return new ExtDecimal(content().abs(mc));
         } else {
-            throw new UnsupportedOperationException("Unknown type");
+            return result(ABS[type.ordinal()], null);
         }
     }
 
@@ -521,19 +655,8 @@ public class ExtDecimal extends VectorSpaceElement {
      * @see #negate()
      */
     public ExtDecimal plus() {
-        if (type == Type.NUMBER) {
-            return new ExtDecimal(content.plus());
-        } else if (type == Type.POSITIVEZERO) {
-            return new ExtDecimal(Type.POSITIVEZERO);
-        } else if (type == Type.NEGATIVEZERO) {
-            return new ExtDecimal(Type.NEGATIVEZERO);
-        } else if (type == Type.INFINITY) {
-            return new ExtDecimal(Type.INFINITY);
-        } else if (type == Type.NEGATIVEINFINITY) {
-            return new ExtDecimal(Type.NEGATIVEINFINITY);
-        } else {
-            throw new UnsupportedOperationException("Unknown type");
-        }
+        // ExtDecimal is immutable
+        return this;
     }
 
     /**
@@ -545,18 +668,42 @@ public class ExtDecimal extends VectorSpaceElement {
      * @return {@code -this}.
      */
     public ExtDecimal negate() {
-        if (type == Type.NUMBER) {
-            return new ExtDecimal(content.negate());
-        } else if (type == Type.POSITIVEZERO) {
-            return new ExtDecimal(Type.NEGATIVEZERO);
-        } else if (type == Type.NEGATIVEZERO) {
-            return new ExtDecimal(Type.POSITIVEZERO);
-        } else if (type == Type.INFINITY) {
-            return new ExtDecimal(Type.NEGATIVEINFINITY);
-        } else if (type == Type.NEGATIVEINFINITY) {
-            return new ExtDecimal(Type.INFINITY);
+        if (type == Type.NUMBER && compact) {
+            long l = -low;
+            return new ExtDecimal(l == 0 ? -high : ~high, l, compactScale);
+        } else if (type == Type.NUMBER) {
+            return new ExtDecimal(content().negate());
         } else {
-            throw new UnsupportedOperationException("Unknown type");
+            return result(NEGATE[type.ordinal()], null);
+        }
+    }
+
+    /**
+     * Returns the shared constant of a result code of the dispatch tables.
+     *
+     * @param code result code
+     * @param other the second operand for {@code R_OTHER}
+     * @return the result
+     * @throws UnsupportedOperationException for {@code R_UNDEFINED}
+     */
+    private ExtDecimal result(byte code, ExtDecimal other) {
+        switch (code) {
+            case R_THIS:
+                return this;
+            case R_OTHER:
+                return other;
+            case R_ZERO:
+                return ZERO;
+            case R_POSITIVEZERO:
+                return POSITIVEZERO;
+            case R_NEGATIVEZERO:
+                return NEGATIVEZERO;
+            case R_INFINITY:
+                return INFINITY;
+            case R_NEGATIVEINFINITY:
+                return NEGATIVEINFINITY;
+            default:
+                throw new UnsupportedOperationException("Unknown number");
         }
     }
 
@@ -582,54 +729,34 @@ public class ExtDecimal extends VectorSpaceElement {
      * equal to, or greater than {@code val}.
      */
     public int compareTo(ExtDecimal val) {
-        if (type == Type.NUMBER) {
-            return content.compareTo(val.toBigDecimal());
-        } else if (type == Type.POSITIVEZERO) {
-            if (val.type == Type.NEGATIVEZERO || val.type == Type.NEGATIVEINFINITY) {
-                // 0+ > 0- > -INF
-                return 1;
-            } else if (val.type == Type.INFINITY) {
-                // 0+ < INF
-                return -1;
-            } else if (val.type == Type.POSITIVEZERO) {
-                // 0+ == 0+
-                return 0;
-            } else {
-                // Restvergleich
-                return compareTo(ZERO);
-            }
-        } else if (type == Type.NEGATIVEZERO) {
-            if (val.type == Type.NEGATIVEINFINITY) {
-                // 0- > -INF
-                return 1;
-            } else if (val.type == Type.POSITIVEZERO || val.type == Type.INFINITY) {
-                // 0- < 0+ < INF
-                return -1;
-            } else if (val.type == Type.NEGATIVEZERO) {
-                // 0- == 0-
-                return 0;
-            } else {
-                // Restvergleich
-                return compareTo(ZERO);
-            }
-        } else if (type == Type.INFINITY) {
-            if (val.type == Type.INFINITY) {
-                // INF ==? INF
-                return 0;
-            } else {
-                // x < INF
-                return -1;
-            }
-        } else if (type == Type.NEGATIVEINFINITY) {
-            if (val.type == Type.NEGATIVEINFINITY) {
-                // -INF ==? -INF
-                return 0;
-            } else {
-                // -INF < x
-                return 1;
+        if (type == Type.NUMBER && val.type == Type.NUMBER) {
+            if (compact && val.compact) {
+                if (compactScale == val.compactScale) {
+                    return high != val.high ? Long.compare(high, val.high) : Long.compareUnsigned(low, val.low);
+                }
+                int signum = signumNumber();
+                if (signum != val.signumNumber()) {
+                    return Integer.signum(signum - val.signumNumber());
+                }
+                ExtDecimal difference = addCompact(val, true);
+                if (difference != null) {
+                    return difference.signumNumber();
+                }
             }
+            return content().compareTo(val.content());
+        } else {
+            return Integer.signum(rank() - val.rank());
+        }
+    }
+
+    /**
+     * Returns the position in the order of {@code RANK}.
+     */
+    private int rank() {
+        if (type == Type.NUMBER) {
+            return 3 + 2 * signumNumber();
         } else {
-            throw new UnsupportedOperationException("Unknown type");
+            return RANK[type.ordinal()];
         }
     }
 
@@ -642,62 +769,11 @@ public class ExtDecimal extends VectorSpaceElement {
      * @return {@code this + augend}
      */
     public ExtDecimal add(ExtDecimal augend) {
-        if (type == Type.NUMBER) {
-            if (augend.type == Type.NUMBER) {
-                return new ExtDecimal(content.add(augend.toBigDecimal()));
-            } else if (augend.type == Type.POSITIVEZERO) {
-                return augend;
-            } else if (augend.type == Type.NEGATIVEZERO) {
-                return augend;
-            } else if (augend.type == Type.INFINITY) {
-                return INFINITY;
-            } else if (augend.type == Type.NEGATIVEINFINITY) {
-                return NEGATIVEINFINITY;
-            } else {
-                throw new UnsupportedOperationException("Unknown type");
-            }
-        } else if (type == Type.POSITIVEZERO) {
-            if (augend.type == Type.NUMBER) {
-                return augend;
-            } else if (augend.type == Type.POSITIVEZERO) {
-                return POSITIVEZERO;
-            } else if (augend.type == Type.NEGATIVEZERO) {
-                return ZERO;
-            } else if (augend.type == Type.INFINITY) {
-                return INFINITY;
-            } else if (augend.type == Type.NEGATIVEINFINITY) {
-                return NEGATIVEINFINITY;
-            } else {
-                throw new UnsupportedOperationException("Unknown type");
-            }
-        } else if (type == Type.NEGATIVEZERO) {
-            if (augend.type == Type.NUMBER) {
-                return augend;
-            } else if (augend.type == Type.POSITIVEZERO) {
-                return ZERO;
-            } else if (augend.type == Type.NEGATIVEZERO) {
-                return NEGATIVEZERO;
-            } else if (augend.type == Type.INFINITY) {
-                return INFINITY;
-            } else if (augend.type == Type.NEGATIVEINFINITY) {
-                return NEGATIVEINFINITY;
-            } else {
-                throw new UnsupportedOperationException("Unknown type");
-            }
-        } else if (type == Type.INFINITY) {
-            if (augend.type == Type.NEGATIVEINFINITY) {
-                throw new UnsupportedOperationException("Unknown number");
-            } else {
-                return INFINITY;
-            }
-        } else if (type == Type.NEGATIVEINFINITY) {
-            if (augend.type == Type.INFINITY) {
-                throw new UnsupportedOperationException("Unknown number");
-            } else {
-                return INFINITY;
-            }
+        if (type == Type.NUMBER && augend.type == Type.NUMBER) {
+            ExtDecimal sum = compact && augend.compact ? addCompact(augend, false) : null;
+            return sum != null ? sum : new ExtDecimal(content().add(augend.content()));
         } else {
-            throw new UnsupportedOperationException("Unknown type");
+            return result(ADD[type.ordinal()][augend.type.ordinal()], augend);
         }
     }
 
@@ -715,94 +791,30 @@ public class ExtDecimal extends VectorSpaceElement {
      * mode is {@code UNNECESSARY}.
      */
     public ExtDecimal add(ExtDecimal augend, MathContext mc) {
-        if (type == Type.NUMBER) {
-            if (augend.type == Type.NUMBER) {
-                return new ExtDecimal(content.add(augend.toBigDecimal(), mc));
-            } else if (augend.type == Type.POSITIVEZERO) {
-                return augend;
-            } else if (augend.type == Type.NEGATIVEZERO) {
-                return augend;
-            } else if (augend.type == Type.INFINITY) {
-                return INFINITY;
-            } else if (augend.type == Type.NEGATIVEINFINITY) {
-                return NEGATIVEINFINITY;
-            } else {
-                throw new UnsupportedOperationException("Unknown type");
-            }
-        } else if (type == Type.POSITIVEZERO) {
-            if (augend.type == Type.NUMBER) {
-                return augend;
-            } else if (augend.type == Type.POSITIVEZERO) {
-                return POSITIVEZERO;
-            } else if (augend.type == Type.NEGATIVEZERO) {
-                return ZERO;
-            } else if (augend.type == Type.INFINITY) {
-                return INFINITY;
-            } else if (augend.type == Type.NEGATIVEINFINITY) {
-                return NEGATIVEINFINITY;
-            } else {
-                throw new UnsupportedOperationException("Unknown type");
-            }
-        } else if (type == Type.NEGATIVEZERO) {
-            if (augend.type == Type.NUMBER) {
-                return augend;
-            } else if (augend.type == Type.POSITIVEZERO) {
-                return ZERO;
-            } else if (augend.type == Type.NEGATIVEZERO) {
-                return NEGATIVEZERO;
-            } else if (augend.type == Type.INFINITY) {
-                return INFINITY;
-            } else if (augend.type == Type.NEGATIVEINFINITY) {
-                return NEGATIVEINFINITY;
-            } else {
-                throw new UnsupportedOperationException("Unknown type");
-            }
-        } else if (type == Type.INFINITY) {
-            if (augend.type == Type.NEGATIVEINFINITY) {
-                throw new UnsupportedOperationException("Unknown number");
-            } else {
-                return INFINITY;
-            }
-        } else if (type == Type.NEGATIVEINFINITY) {
-            if (augend.type == Type.INFINITY) {
-                throw new UnsupportedOperationException("Unknown number");
-            } else {
-                return INFINITY;
-            }
+        if (type == Type.NUMBER && augend.type == Type.NUMBER) {
+            return new ExtDecimal(content().add(augend.content(), mc));
         } else {
-            throw new UnsupportedOperationException("Unknown type");
+            return result(ADD[type.ordinal()][augend.type.ordinal()], augend);
         }
     }
 
     public ExtDecimal inc() {
         if (type == Type.NUMBER) {
-            return add(ONE);
-        } else if (type == Type.POSITIVEZERO) {
-            return ONE;
-        } else if (type == Type.NEGATIVEZERO) {
+            return new ExtDecimal(content().add(BigDecimal.ONE));
+        } else if (type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO) {
             return ONE;
-        } else if (type == Type.INFINITY) {
-            return INFINITY;
-        } else if (type == Type.NEGATIVEINFINITY) {
-            return NEGATIVEINFINITY;
         } else {
-            throw new UnsupportedOperationException("Unknown type");
+            return this;
         }
     }
 
     public ExtDecimal dec() {
         if (type == Type.NUMBER) {
-            return add(new ExtDecimal(-1));
-        } else if (type == Type.POSITIVEZERO) {
-            return MINUSONE;
-        } else if (type == Type.NEGATIVEZERO) {
+            return new ExtDecimal(content().subtract(BigDecimal.ONE));
+        } else if (type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO) {
             return MINUSONE;
-        } else if (type == Type.INFINITY) {
-            return INFINITY;
-        } else if (type == Type.NEGATIVEINFINITY) {
-            return NEGATIVEINFINITY;
         } else {
-            throw new UnsupportedOperationException("Unknown type");
+            return this;
         }
     }
 
@@ -820,8 +832,12 @@ public class ExtDecimal extends VectorSpaceElement {
      * @return {@code this - subtrahend}
      */
     public ExtDecimal subtract(ExtDecimal subtrahend) {
-        // Not yet customized
-        return new ExtDecimal(content.subtract(subtrahend.toBigDecimal()));
+        if (type == Type.NUMBER && subtrahend.type == Type.NUMBER) {
+            ExtDecimal difference = compact && subtrahend.compact ? addCompact(subtrahend, true) : null;
+            return difference != null ? difference : new ExtDecimal(content().subtract(subtrahend.content()));
+        } else {
+            return add(subtrahend.negate());
+        }
     }
 
     @Override
@@ -838,8 +854,130 @@ public class ExtDecimal extends VectorSpaceElement {
      * @return {@code this * multiplicand}
      */
     public ExtDecimal multiply(ExtDecimal multiplicand) {
-        // Not yet customized
-        return new ExtDecimal(content.multiply(multiplicand.toBigDecimal()));
+        // Not yet customized for the special values
+        if (type == Type.NUMBER && multiplicand.type == Type.NUMBER && compact && multiplicand.compact) {
+            ExtDecimal product = multiplyCompact(multiplicand);
+            if (product != null) {
+                return product;
+            }
+        }
+        return new ExtDecimal(content().multiply(multiplicand.toBigDecimal()));
+    }
+
+    /**
+     * Returns {@code this + val} or {@code this - val} of two numbers in
+     * compact form, null if the result does not fit.
+     */
+    private ExtDecimal addCompact(ExtDecimal val, boolean subtract) {
+        long xh = high;
+        long xl = low;
+        long yh = val.high;
+        long yl = val.low;
+        if (subtract) {
+            yl = -yl;
+            yh = yl == 0 ? -yh : ~yh;
+        }
+        int scale = Math.max(compactScale, val.compactScale);
+        long d = Math.abs((long) compactScale - val.compactScale);
+        if (d != 0) {
+            // Multiply the operand with the smaller scale by 10^d
+            boolean swap = compactScale > val.compactScale;
+            long h = swap ? yh : xh;
+            long l = swap ? yl : xl;
+            if ((h | l) != 0) {
+                boolean negative = h < 0;
+                if (negative) {
+                    l = -l;
+                    h = l == 0 ? -h : ~h;
+                }
+                for (; d > 0; d -= 18) {
+                    long p = LONGPOWERSOFTEN[(int) Math.min(d, 18)];
+                    long hp = h * p;
+                    if (multiplyHigh(h, p) != 0) {
+                        return null;
+                    }
+                    long nh = hp + multiplyHigh(l, p);
+                    if (nh < 0 || Long.compareUnsigned(nh, hp) < 0) {
+                        return null;
+                    }
+                    h = nh;
+                    l *= p;
+                }
+                if (negative) {
+                    l = -l;
+                    h = l == 0 ? -h : ~h;
+                }
+            }
+            if (swap) {
+                yh = h;
+                yl = l;
+            } else {
+                xh = h;
+                xl = l;
+            }
+        }
+        long l = xl + yl;
+        long h = xh + yh + (Long.compareUnsigned(l, xl) < 0 ? 1 : 0);
+        if (((xh ^ h) & (yh ^ h)) < 0 || (h == Long.MIN_VALUE && l == 0)) {
+            return null;
+        }
+        return new ExtDecimal(h, l, scale);
+    }
+
+    /**
+     * Returns {@code this * val} of two numbers in compact form, null if the
+     * result does not fit.
+     */
+    private ExtDecimal multiplyCompact(ExtDecimal val) {
+        long scale = (long) compactScale + val.compactScale;
+        if (scale != (int) scale) {
+            return null;
+        }
+        boolean negative = (high < 0) != (val.high < 0);
+        long ah = high;
+        long al = low;
+        if (ah < 0) {
+            al = -al;
+            ah = al == 0 ? -ah : ~ah;
+        }
+        long bh = val.high;
+        long bl = val.low;
+        if (bh < 0) {
+            bl = -bl;
+            bh = bl == 0 ? -bh : ~bh;
+        }
+        if (ah != 0 && bh != 0) {
+            return null;
+        }
+        // (ah 2^64 + al) (bh 2^64 + bl) with ah = 0 or bh = 0
+        long cross = ah * bl + al * bh;
+        if (multiplyHigh(ah, bl) != 0 || multiplyHigh(al, bh) != 0 || cross < 0) {
+            return null;
+        }
+        long h = multiplyHigh(al, bl) + cross;
+        if (h < 0) {
+            return null;
+        }
+        long l = al * bl;
+        if (negative) {
+            l = -l;
+            h = l == 0 ? -h : ~h;
+        }
+        return new ExtDecimal(h, l, (int) scale);
+    }
+
+    /**
+     * The upper 64 bits of the unsigned 128 bit product a * b.
+     */
+    static long multiplyHigh(long a, long b) {
+        long a0 = a & 0xFFFFFFFFL;
+        long a1 = a >>> 32;
+        long b0 = b & 0xFFFFFFFFL;
+        long b1 = b >>> 32;
+        long p01 = a0 * b1;
+        long p10 = a1 * b0;
+        long middle = ((a0 * b0) >>> 32) + (p01 & 0xFFFFFFFFL) + (p10 & 0xFFFFFFFFL);
+        return a1 * b1 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
     }
 
     /**
@@ -854,7 +992,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal multiply(ExtDecimal multiplicand, MathContext mc) {
         // Not yet customized
-        return new ExtDecimal(content.multiply(multiplicand.toBigDecimal(), mc));
+        return new ExtDecimal(content().multiply(multiplicand.toBigDecimal(), mc));
     }
 
     /**
@@ -874,7 +1012,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal multiply(ExtDecimal multiplicand, int precision, RoundingMode roundingMode) {
         // Not yet customized
-        return new ExtDecimal(content.multiply(multiplicand.toBigDecimal(), new MathContext(precision, roundingMode)));
+        return new ExtDecimal(content().multiply(multiplicand.toBigDecimal(), new MathContext(precision, roundingMode)));
     }
 
     /**
@@ -891,7 +1029,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal divide(ExtDecimal divisor) {
         // Not yet customized
-        return new ExtDecimal(content.divide(divisor.toBigDecimal()));
+        return new ExtDecimal(content().divide(divisor.toBigDecimal()));
     }
 
     /**
@@ -908,7 +1046,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal divide(ExtDecimal divisor, MathContext mc) {
         // Not yet customized
-        return new ExtDecimal(content.divide(divisor.toBigDecimal(), mc));
+        return new ExtDecimal(content().divide(divisor.toBigDecimal(), mc));
     }
 
     /**
@@ -927,7 +1065,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal divide(ExtDecimal divisor, RoundingMode roundingMode) {
         // Not yet customized
-        return new ExtDecimal(content.divide(divisor.toBigDecimal(), roundingMode));
+        return new ExtDecimal(content().divide(divisor.toBigDecimal(), roundingMode));
     }
 
     /**
@@ -959,7 +1097,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal divide(ExtDecimal divisor, int roundingMode) {
         // Not yet customized
-        return new ExtDecimal(content.divide(divisor.toBigDecimal(), roundingMode));
+        return new ExtDecimal(content().divide(divisor.toBigDecimal(), roundingMode));
     }
 
     /**
@@ -978,7 +1116,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal divide(ExtDecimal divisor, int scale, RoundingMode roundingMode) {
         // Not yet customized
-        return new ExtDecimal(content.divide(divisor.toBigDecimal(), scale, roundingMode));
+        return new ExtDecimal(content().divide(divisor.toBigDecimal(), scale, roundingMode));
     }
 
     /**
@@ -1010,7 +1148,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal divide(ExtDecimal divisor, int scale, int roundingMode) {
         // Not yet customized
-        return new ExtDecimal(content.divide(divisor.toBigDecimal(), scale, roundingMode));
+        return new ExtDecimal(content().divide(divisor.toBigDecimal(), scale, roundingMode));
     }
 
     /**
@@ -1029,45 +1167,317 @@ public class ExtDecimal extends VectorSpaceElement {
      * @throws ArithmeticException if {@code n} is out of range.
      */
     public ExtDecimal pow(int n) {
-        return new ExtDecimal(content.pow(n));
+        if (type == Type.NUMBER) {
+            return new ExtDecimal(content().pow(n));
+        }
+        return powSpecial(n);
     }
 
     /**
-     * Returns a {@code ExtDecimal} which is numerically equal to this one but
-     * with any trailing zeros removed from the representation. For example,
-     * stripping the trailing zeros from the {@code ExtDecimal} value {@code 600.0},
-     * which has
-     * [{@code BigInteger}, {@code scale}] components equals to [6000, 1],
-     * yields {@code 6E2} with [{@code BigInteger},
-     * {@code scale}] components equals to [6, -2]
+     * Returns a {@code ExtDecimal} whose value is <tt>(this<sup>n</sup>)</tt>,
+     * rounded according to {@code mc}. The power is computed by repeated
+     * squaring with {@code log10(|n|) + 3} extra digits, so the error is
+     * below one unit of the last place. A negative {@code n} gives the
+     * reciprocal of the power. {@code mc.getPrecision() == 0} means the
+     * exact power for {@code n >= 0}.
      *
-     * @return a numerically equal {@code ExtDecimal} with any trailing zeros
-     * removed.
+     * @param n power to raise this {@code ExtDecimal} to.
+     * @param mc the context to use.
+     * @return <tt>this<sup>n</sup></tt>
+     * @throws ArithmeticException if {@code this} is 0 and {@code n} is
+     * negative.
+     */
+    public ExtDecimal pow(int n, MathContext mc) {
+        if (type != Type.NUMBER) {
+            return powSpecial(n);
+        } else if (mc.getPrecision() == 0) {
+            return pow(n);
+        } else if (n == 0) {
+            return ONE;
+        }
+        long m = Math.abs((long) n);
+        MathContext work = new MathContext(mc.getPrecision() + Long.toString(m).length() + 3, mc.getRoundingMode());
+        BigDecimal base = content().round(work);
+        BigDecimal result = base;
+        for (long bit = Long.highestOneBit(m) >> 1; bit > 0; bit >>= 1) {
+            result = result.multiply(result, work);
+            if ((m & bit) != 0) {
+                result = result.multiply(base, work);
+            }
+        }
+        if (n < 0) {
+            return new ExtDecimal(BigDecimal.ONE.divide(result, mc));
+        }
+        return new ExtDecimal(result.round(mc));
+    }
+
+    /**
+     * The powers of the special values 0+, 0-, infinity and -infinity.
      */
-    public ExtDecimal stripTrailingZeros() {
-        if (type == Type.NUMBER) {
-            return new ExtDecimal(content.stripTrailingZeros());
-        } else {
-            return this;
+    private ExtDecimal powSpecial(int n) {
+        if (n == 0) {
+            return ONE;
+        }
+        boolean odd = (n & 1) != 0;
+        switch (type) {
+            case POSITIVEZERO:
+                return n > 0 ? POSITIVEZERO : INFINITY;
+            case NEGATIVEZERO:
+                if (n > 0) {
+                    return odd ? NEGATIVEZERO : POSITIVEZERO;
+                }
+                return odd ? NEGATIVEINFINITY : INFINITY;
+            case INFINITY:
+                return n > 0 ? INFINITY : POSITIVEZERO;
+            case NEGATIVEINFINITY:
+                if (n > 0) {
+                    return odd ? NEGATIVEINFINITY : INFINITY;
+                }
+                return odd ? NEGATIVEZERO : POSITIVEZERO;
+            default:
+                throw new UnsupportedOperationException("pow of " + type);
         }
     }
 
     /**
-     * Returns a {@code ExtDecimal} whose value is {@code (this % divisor)}.
+     * Returns an {@code ExtDecimal} whose value is <tt>(this<sup>y</sup>)</tt>,
+     * and whose scale is {@code scale}, rounded with {@code rm}.
      *
-     * !!!!Very Bad performance!!!!
+     * The exponent is the reduced fraction y = a/b, where b = 2^i 5^j. If
+     * this is the b-th power of a decimal number, the root is exact and the
+     * result is its a-th power, which is computed exactly as long as it is
+     * not longer than the result. Other roots with b up to {@link #ROOTLIMIT}
+     * come from Newton's method on the integers, all other powers from
+     * exp(y ln(this)). The working precision is raised until the error bound
+     * allows the correct rounding.
      *
-     * <p>The remainder is given by
-     * {@code this.subtract(this.divideToIntegralValue(divisor).multiply(divisor))}.
-     * Note that this is not the modulo operation (the result can be negative).
+     * A negative base needs an odd b, the sign is that of (-1)^a. The special
+     * values follow {@link #pow(int)}, an exponent which is not an integer
+     * makes the sign of 0- and -infinity vanish.
      *
-     * @param divisor value by which this {@code ExtDecimal} is to be divided.
-     * @return {@code this % divisor}.
+     * @param y power to raise this {@code ExtDecimal} to.
+     * @param scale scale of the {@code ExtDecimal} power to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException if the power is not real, {@code this} is
+     * 0 and {@code y} negative, or the result is too large.
+     * @return <tt>this<sup>y</sup></tt>
+     */
+    public ExtDecimal pow(ExtDecimal y, int scale, RoundingMode rm) {
+        if (type != Type.NUMBER || y.type != Type.NUMBER) {
+            return powSpecial(y);
+        }
+        BigDecimal e = y.content().stripTrailingZeros();
+        BigDecimal x = content();
+        if (e.signum() == 0) {
+            return new ExtDecimal(BigDecimal.ONE.setScale(scale, rm));
+        } else if (x.signum() == 0) {
+            if (e.signum() < 0) {
+                throw new ArithmeticException("Division by zero");
+            }
+            return new ExtDecimal(BigDecimal.ZERO.setScale(scale));
+        }
+        BigInteger u = e.unscaledValue();
+        int sign = 1;
+        if (x.signum() < 0) {
+            // b is odd if the 2^scale of 10^scale cancels, then a is odd if no 2 is left
+            if (e.scale() > 0 && u.getLowestSetBit() < e.scale()) {
+                throw new ArithmeticException("pow of a negative number with an even root");
+            }
+            if (e.scale() >= 0 && u.getLowestSetBit() == e.scale()) {
+                sign = -1;
+            }
+            x = x.negate();
+        }
+        if (x.compareTo(BigDecimal.ONE) == 0) {
+            return new ExtDecimal(BigDecimal.valueOf(sign).setScale(scale, rm));
+        }
+        BigInteger a = u;
+        int b = 0;
+        // u is not divisible by 10, so b >= 2^scale
+        if (e.scale() > 0 && e.scale() < 31) {
+            BigInteger denominator = powerOfTen(e.scale());
+            BigInteger g = u.gcd(denominator);
+            a = u.divide(g);
+            denominator = denominator.divide(g);
+            if (denominator.bitLength() < 32) {
+                b = denominator.intValue();
+                BigDecimal root = exactRoot(x, b);
+                if (root != null) {
+                    x = root;
+                    e = new BigDecimal(a);
+                }
+            }
+        }
+        // digits before the decimal point of the result
+        double digits = log10(x) * e.doubleValue();
+        if (digits < -(scale + 3)) {
+            // |result| < 10^-(scale + 2), only the sign and the rounding mode decide
+            return new ExtDecimal(new BigDecimal(BigInteger.valueOf(sign), scale + 2).setScale(scale, rm));
+        } else if (digits > (Integer.MAX_VALUE >> 2) * Math.log10(2)) {
+            throw new ArithmeticException("pow overflow");
+        }
+        int d = (int) Math.ceil(Math.max(digits, 0));
+        if (e.scale() <= 0 && e.precision() - e.scale() <= 9) {
+            return powInteger(x, e.intValueExact(), sign, d, scale, rm);
+        } else if (e.scale() > 0 && b > 1 && b <= ROOTLIMIT && a.bitLength() <= 31
+                && Math.abs(a.intValue()) <= ROOTPOWERLIMIT) {
+            int n = a.intValue();
+            for (int guard = 10;; guard *= 2) {
+                MathContext mc = new MathContext(Math.max(d + scale, 0) + guard + 3, RoundingMode.HALF_EVEN);
+                BigDecimal root = b == 2 ? sqrt(x, mc) : root(x, b, mc);
+                BigDecimal value = new ExtDecimal(root).pow(n, mc).toBigDecimal();
+                // relative errors below 1 unit of the last place from the root, times |n|, and the power
+                BigDecimal error = value.abs().multiply(BigDecimal.valueOf(Math.abs(n) + 2)).movePointLeft(mc.getPrecision() - 1);
+                ExtDecimal result = roundOrNull(sign < 0 ? value.negate() : value, error, scale, rm);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        int digitsOfY = Math.max(0, e.precision() - e.scale());
+        for (int guard = 10;; guard *= 2) {
+            int w = scale + guard;
+            int lnScale = w + d + digitsOfY + 2;
+            // |z - y ln(x)| < |y| 10^-lnScale <= 1/100
+            BigDecimal z = e.multiply(ln(x, lnScale + 3));
+            BigDecimal value = new ExtDecimal(z).exp(w, RoundingMode.HALF_EVEN).toBigDecimal();
+            // |exp(z + t) - exp(z)| <= 2 |t| exp(z) for |t| <= 1/2, and the rounding of exp
+            BigDecimal ulp = BigDecimal.ONE.movePointLeft(w);
+            BigDecimal error = value.add(ulp).multiply(e.abs()).movePointLeft(lnScale - 1).add(ulp);
+            ExtDecimal result = roundOrNull(sign < 0 ? value.negate() : value, error, scale, rm);
+            if (result != null) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns sign x^n for x > 0 with the scale {@code scale}, where x^n has
+     * about {@code digits} digits before the decimal point. The power is exact
+     * if it has no more digits than the result, otherwise it is not a number
+     * with the scale {@code scale}, so the rounding with an error bound ends.
+     */
+    private static ExtDecimal powInteger(BigDecimal x, int n, int sign, int digits, int scale, RoundingMode rm) {
+        BigDecimal c = x.stripTrailingZeros();
+        int m = Math.abs(n);
+        if (m * log10(new BigDecimal(c.unscaledValue())) <= digits + Math.abs(scale) + 1000) {
+            BigDecimal power = c.pow(m);
+            if (sign < 0) {
+                power = power.negate();
+            }
+            if (n >= 0) {
+                return new ExtDecimal(power.setScale(scale, rm));
+            }
+            return new ExtDecimal(BigDecimal.ONE.divide(power, scale, rm));
+        }
+        for (int guard = 10;; guard *= 2) {
+            MathContext mc = new MathContext(Math.max(digits + scale, 0) + guard, RoundingMode.HALF_EVEN);
+            BigDecimal value = new ExtDecimal(x).pow(n, mc).toBigDecimal();
+            ExtDecimal result = roundOrNull(sign < 0 ? value.negate() : value, value.ulp(), scale, rm);
+            if (result != null) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns the k-th root of x > 0 if it is a decimal number, null
+     * otherwise. Without trailing zeros the unscaled value c is not divisible
+     * by 10, so a root r 10^-m needs c = r^k and the scale k m. A k-th power
+     * above 1 has more than k bits.
+     */
+    static BigDecimal exactRoot(BigDecimal x, int k) {
+        BigDecimal s = x.stripTrailingZeros();
+        BigInteger c = s.unscaledValue();
+        if (s.scale() % k != 0 || (c.bitLength() <= k && !c.equals(BigInteger.ONE))) {
+            return null;
+        }
+        BigInteger r = iroot(c, k);
+        return r.pow(k).equals(c) ? new BigDecimal(r, s.scale() / k) : null;
+    }
+
+    /**
+     * The powers of the special values 0+, 0-, infinity and -infinity, and the
+     * powers with an exponent 0+, 0-, infinity or -infinity.
+     */
+    private ExtDecimal powSpecial(ExtDecimal y) {
+        if (y.type == Type.POSITIVEZERO || y.type == Type.NEGATIVEZERO) {
+            return ONE;
+        } else if (y.type == Type.INFINITY || y.type == Type.NEGATIVEINFINITY) {
+            // |this| compared to 1
+            int cmp;
+            boolean negative;
+            if (type == Type.NUMBER) {
+                cmp = content().abs().compareTo(BigDecimal.ONE);
+                negative = content().signum() < 0;
+            } else {
+                cmp = isZero() ? -1 : 1;
+                negative = type == Type.NEGATIVEINFINITY;
+            }
+            if (cmp == 0 && !negative) {
+                return ONE;
+            } else if (cmp == 0 || (negative && (cmp > 0) == (y.type == Type.INFINITY))) {
+                // the powers alternate in sign without a limit
+                throw new ArithmeticException("pow of a negative base with an infinite exponent is undefined");
+            }
+            return (cmp > 0) == (y.type == Type.INFINITY) ? INFINITY : POSITIVEZERO;
+        }
+        BigDecimal e = y.content().stripTrailingZeros();
+        if (e.signum() == 0) {
+            return ONE;
+        }
+        boolean odd = e.scale() == 0 && e.unscaledValue().testBit(0);
+        boolean negative = odd && (type == Type.NEGATIVEZERO || type == Type.NEGATIVEINFINITY);
+        if (isZero() == (e.signum() > 0)) {
+            return negative ? NEGATIVEZERO : POSITIVEZERO;
+        }
+        return negative ? NEGATIVEINFINITY : INFINITY;
+    }
+
+    /**
+     * Returns log10(x) for x > 0 from its 17 leading digits.
+     */
+    private static double log10(BigDecimal x) {
+        int digits = x.precision() - x.scale();
+        return Math.log10(x.round(MathContext.DECIMAL64).movePointLeft(digits).doubleValue()) + digits;
+    }
+
+    /**
+     * Returns a {@code ExtDecimal} which is numerically equal to this one but
+     * with any trailing zeros removed from the representation. For example,
+     * stripping the trailing zeros from the {@code ExtDecimal} value {@code 600.0},
+     * which has
+     * [{@code BigInteger}, {@code scale}] components equals to [6000, 1],
+     * yields {@code 6E2} with [{@code BigInteger},
+     * {@code scale}] components equals to [6, -2]
+     *
+     * @return a numerically equal {@code ExtDecimal} with any trailing zeros
+     * removed.
+     */
+    public ExtDecimal stripTrailingZeros() {
+        if (type == Type.NUMBER) {
+            return new ExtDecimal(content().stripTrailingZeros());
+        } else {
+            return this;
+        }
+    }
+
+    /**
+     * Returns a {@code ExtDecimal} whose value is {@code (this % divisor)}.
+     *
+     * !!!!Very Bad performance!!!!
+     *
+     * <p>The remainder is given by
+     * {@code this.subtract(this.divideToIntegralValue(divisor).multiply(divisor))}.
+     * Note that this is not the modulo operation (the result can be negative).
+     *
+     * @param divisor value by which this {@code ExtDecimal} is to be divided.
+     * @return {@code this % divisor}.
      * @throws ArithmeticException if {@code divisor==0}
      */
     public ExtDecimal remainder(ExtDecimal divisor) {
         // Not yet customized
-        return new ExtDecimal(content.remainder(divisor.toBigDecimal()));
+        return new ExtDecimal(content().remainder(divisor.toBigDecimal()));
     }
 
     /**
@@ -1094,11 +1504,9 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public boolean isZero() {
         if (type == Type.NUMBER) {
-            return compareTo(ZERO) == 0;
-        } else if (type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO) {
-            return true;
+            return signumNumber() == 0;
         } else {
-            return false;
+            return type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO;
         }
     }
 
@@ -1109,11 +1517,9 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public boolean isPositive() {
         if (type == Type.NUMBER) {
-            return compareTo(ZERO) == 1;
-        } else if (type == Type.POSITIVEZERO || type == Type.INFINITY) {
-            return true;
+            return signumNumber() > 0;
         } else {
-            return false;
+            return type == Type.POSITIVEZERO || type == Type.INFINITY;
         }
     }
 
@@ -1124,11 +1530,9 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public boolean isNegative() {
         if (type == Type.NUMBER) {
-            return compareTo(ZERO) == -1;
-        } else if (type == Type.NEGATIVEZERO || type == Type.NEGATIVEINFINITY) {
-            return true;
+            return signumNumber() < 0;
         } else {
-            return false;
+            return type == Type.NEGATIVEZERO || type == Type.NEGATIVEINFINITY;
         }
     }
 
@@ -1163,29 +1567,25 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public int scale() {
         if (type == Type.NUMBER) {
-            return content.scale();
+            return compact ? compactScale : content().scale();
         } else {
             return 0;
         }
     }
 
     /**
-     * Multiplies the value of this with 2^n
-     *
-     * 2013-06-21: OK
+     * Multiplies the value of this with 2^n. The result is exact, the
+     * unscaled value is shifted and only for negative n the scale grows, see
+     * {@link #shiftBinary(BigDecimal, long)}.
      *
      * @param n
      * @return {@code this * 2^n}
      */
     public ExtDecimal shiftBinaryExponent(int n) {
-        // Not yet customized
-        if (n > 0) {
-            return this.multiply(TWO.pow(n));
-        } else if (n == 0) {
-            return this.plus();
-        } else {
-            return this.divide(TWO.pow(-n));
+        if (type == Type.NUMBER) {
+            return new ExtDecimal(shiftBinary(content(), n));
         }
+        return this;
     }
 
     /**
@@ -1222,7 +1622,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal movePointLeft(int n) {
         // Not yet customized
-        return new ExtDecimal(content.movePointLeft(n));
+        return new ExtDecimal(content().movePointLeft(n));
     }
 
     /**
@@ -1242,7 +1642,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal movePointRight(int n) {
         // Not yet customized
-        return new ExtDecimal(content.movePointRight(n));
+        return new ExtDecimal(content().movePointRight(n));
     }
 
     /**
@@ -1270,7 +1670,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal floor() {
         // Not yet customized
-        return new ExtDecimal(new BigDecimal(content.toBigInteger()));
+        return new ExtDecimal(new BigDecimal(content().toBigInteger()));
     }
 
     // Means in the correct order
@@ -1284,7 +1684,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal max(ExtDecimal val) {
         if (type == Type.NUMBER) {
-            return new ExtDecimal(content.max(val.toBigDecimal()));
+            return new ExtDecimal(content().max(val.toBigDecimal()));
         } else {
             if (compareTo(val) == -1) {
                 return val;
@@ -1363,7 +1763,7 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal min(ExtDecimal val) {
         if (type == Type.NUMBER) {
-            return new ExtDecimal(content.min(val.toBigDecimal()));
+            return new ExtDecimal(content().min(val.toBigDecimal()));
         } else {
             if (compareTo(val) != -1) {
                 return val;
@@ -1376,12 +1776,13 @@ public class ExtDecimal extends VectorSpaceElement {
     // Analytic and inverse functions
     /**
      * Returns an {@code ExtDecimal} whose value is <tt>sqrt(this)</tt>, and
-     * whose scale is {@code scale}. If {@code this} is negative it throws an
+     * whose scale is {@code scale}. The result is truncated
+     * ({@link RoundingMode#DOWN}). If {@code this} is negative it throws an
      * ArithmeticException.
      *
-     * Tested 2013-06-21: Bug for sqrt(0) detected an fixed.
-     *
-     * !!! There are some Exceptions for too large numbers !!!
+     * The root is calculated exactly on the unscaled value with
+     * {@link #isqrt(BigInteger)}, so there is no limit by the range of
+     * {@code double}.
      *
      * @param scale scale of the {@code ExtDecimal} radix to be returned.
      * @throws ArithmeticException
@@ -1389,38 +1790,122 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     public ExtDecimal sqrt(int scale) {
         if (type == Type.NUMBER) {
-            if (this.compareTo(ExtDecimal.ZERO) >= 0) {
-                double dblval = this.doubleValue();
-                double dblguess = Math.sqrt(dblval);
-                //ExtDecimal factor = ExtDecimal.valueOf(1 / (2 * dblguess));
-                ExtDecimal half = ExtDecimal.valueOf(0.5);
-                ExtDecimal guess = ExtDecimal.valueOf(dblguess);
-                if (guess.compareTo(ExtDecimal.ZERO) == 0) {
-                    guess = new ExtDecimal(0.00001);
-                }
-                ExtDecimal newguess = guess.add(ExtDecimal.ONE);
-                while (guess.compareTo(newguess) != 0 && !guess.equals(newguess)) {
-                    newguess = guess.plus();
-                    // guess := guess - (guess^2 - this) * factor
-                    // Newton's method
-                    //guess = guess.subtract(guess.pow(2).setScale(scale + 2, RoundingMode.HALF_UP).subtract(this).multiply(factor).setScale(scale + 2, RoundingMode.HALF_UP));
-                    // Heron's method
-                    guess = guess.add(this.divide(guess, scale + 2, RoundingMode.DOWN)).multiply(half).setScale(scale + 2, RoundingMode.DOWN);
-                    System.out.println("SQRTSTEP");
+            if (content().signum() > 0) {
+                // sqrt(u * 10^-s) * 10^scale = sqrt(u * 10^(2 scale - s))
+                int exponent = 2 * scale - content().scale();
+                BigInteger n = content().unscaledValue();
+                if (exponent >= 0) {
+                    n = n.multiply(powerOfTen(exponent));
+                } else {
+                    n = n.divide(powerOfTen(-exponent));
                 }
-                return guess.setScale(scale, RoundingMode.DOWN);
+                return new ExtDecimal(new BigDecimal(isqrt(n), scale));
+            } else if (content().signum() == 0) {
+                return new ExtDecimal(BigDecimal.ZERO.setScale(scale));
             } else {
-                throw new ArithmeticException("sqrt of ".toString());
+                throw new ArithmeticException("sqrt of " + this);
             }
         } else if (type == Type.POSITIVEZERO) {
             return POSITIVEZERO;
         } else if (type == Type.INFINITY) {
             return INFINITY;
         } else {
-            throw new UnsupportedOperationException("sqrt of ".toString());
+            throw new UnsupportedOperationException("sqrt of " + type);
+        }
+    }
+
+    /**
+     * Returns floor(sqrt(n)) for {@code n >= 0}. The root of the upper half
+     * of the bits is calculated recursively, so the precision doubles with
+     * every level, and one Newton step {@code r := (r + n/r)/2} extends it to
+     * the full length. Numbers up to 52 bits start from {@code Math.sqrt}.
+     *
+     * @param n
+     * @return {@code floor(sqrt(n))}
+     */
+    static BigInteger isqrt(BigInteger n) {
+        if (n.bitLength() <= 52) {
+            long v = n.longValue();
+            long r = (long) Math.sqrt((double) v);
+            while (r * r > v) {
+                r--;
+            }
+            while ((r + 1) * (r + 1) <= v) {
+                r++;
+            }
+            return BigInteger.valueOf(r);
+        }
+        int half = n.bitLength() / 4;
+        BigInteger r = isqrt(n.shiftRight(2 * half)).shiftLeft(half);
+        r = r.add(n.divide(r)).shiftRight(1);
+        // r is at most a few units away from the root, correct it with the
+        // remainder n - r^2 which changes by 2r +- 1 per unit
+        BigInteger rem = n.subtract(r.multiply(r));
+        while (rem.signum() < 0) {
+            r = r.subtract(BigInteger.ONE);
+            rem = rem.add(r.shiftLeft(1)).add(BigInteger.ONE);
+        }
+        BigInteger step = r.shiftLeft(1).add(BigInteger.ONE);
+        while (rem.compareTo(step) >= 0) {
+            rem = rem.subtract(step);
+            r = r.add(BigInteger.ONE);
+            step = step.add(BigInteger.valueOf(2));
+        }
+        return r;
+    }
+
+    /**
+     * Returns floor(n^(1/k)) for {@code n >= 0} and {@code k >= 2}. Newton's
+     * method {@code r := ((k-1) r + n/r^(k-1)) / k} on the integers decreases
+     * from a start above the root until it reaches the floor of the root. Like
+     * in {@link #isqrt(BigInteger)} the start comes from the root of the upper
+     * half of the bits, so a few steps are enough.
+     *
+     * @param n
+     * @param k
+     * @return {@code floor(n^(1/k))}
+     */
+    static BigInteger iroot(BigInteger n, int k) {
+        if (k == 2) {
+            return isqrt(n);
+        } else if (n.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+        BigInteger r;
+        int half = n.bitLength() / (2 * k);
+        if (half < 32) {
+            r = BigInteger.ONE.shiftLeft((n.bitLength() + k - 1) / k);
+        } else {
+            // (floor(m^(1/k)) + 1)^k > m for m = n / 2^(k half)
+            r = iroot(n.shiftRight(k * half), k).add(BigInteger.ONE).shiftLeft(half);
+        }
+        BigInteger kMinus1 = BigInteger.valueOf(k - 1);
+        BigInteger bigK = BigInteger.valueOf(k);
+        while (true) {
+            BigInteger next = r.multiply(kMinus1).add(n.divide(r.pow(k - 1))).divide(bigK);
+            if (next.compareTo(r) >= 0) {
+                return r;
+            }
+            r = next;
         }
     }
 
+    /**
+     * Returns x^(1/k) for {@code x >= 0} with the precision of {@code mc},
+     * truncated like {@link #sqrt(BigDecimal, MathContext)}. The unscaled
+     * value is extended to k times the precision and a scale divisible by k.
+     */
+    static BigDecimal root(BigDecimal x, int k, MathContext mc) {
+        if (x.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        int shift = k * (mc.getPrecision() + 1) - x.precision();
+        shift += Math.floorMod(-(x.scale() + shift), k);
+        BigInteger n = shift >= 0 ? x.unscaledValue().multiply(powerOfTen(shift))
+                : x.unscaledValue().divide(powerOfTen(-shift));
+        return new BigDecimal(iroot(n, k), (x.scale() + shift) / k).round(mc);
+    }
+
 //    public int decimalPlaces() {
 //        int upperlimit = 1;
 //        int lowerlimit = 0;
@@ -1434,7 +1919,8 @@ public class ExtDecimal extends VectorSpaceElement {
 //    }
     /**
      * Returns an {@code ExtDecimal} whose value is <tt>log10(this)</tt>, and
-     * whose scale is {@code scale}. If {@code this} is negative or 0 it throws
+     * whose scale is {@code scale}. The result is truncated
+     * ({@link RoundingMode#DOWN}). If {@code this} is negative or 0 it throws
      * an ArithmeticException.
      *
      * @param scale scale of the {@code ExtDecimal} log10 to be returned.
@@ -1442,77 +1928,208 @@ public class ExtDecimal extends VectorSpaceElement {
      * @return {@code log10(this)}
      */
     public ExtDecimal log10(int scale) {
-        // Not yet customized
-        if (compareTo(ZERO) < 0) {
-            throw new ArithmeticException("Logarithm of a negative number in a real context");
-        } else if (compareTo(ZERO) == 0) {
-            throw new ArithmeticException("Logarithm of 0");
-        } else if (compareTo(ONE) == 0) {
-            return ZERO;
-        } else if (compareTo(E) == 0) {
-            return ONE;
+        return log10(scale, RoundingMode.DOWN);
+    }
+
+    /**
+     * Returns an {@code ExtDecimal} whose value is <tt>log10(this)</tt>, and
+     * whose scale is {@code scale}, rounded with {@code rm}. It is calculated
+     * as ln(this) / ln(10), powers of ten give exact results.
+     *
+     * @param scale scale of the {@code ExtDecimal} log10 to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException
+     * @return {@code log10(this)}
+     */
+    public ExtDecimal log10(int scale, RoundingMode rm) {
+        if (type == Type.NUMBER) {
+            if (content().signum() < 0) {
+                throw new ArithmeticException("Logarithm of a negative number in a real context");
+            } else if (content().signum() == 0) {
+                throw new ArithmeticException("Logarithm of 0");
+            }
+            BigDecimal stripped = content().stripTrailingZeros();
+            if (stripped.unscaledValue().equals(BigInteger.ONE)) {
+                return new ExtDecimal(BigDecimal.valueOf(-stripped.scale()).setScale(scale));
+            }
+            // digits of the integer part of log10(this)
+            int digits = Long.toString(Math.abs((long) stripped.precision() - stripped.scale())).length();
+            int guard = 10;
+            while (true) {
+                int w = scale + guard + digits;
+                BigDecimal value = ln(content(), w + 2).divide(Constant.LN10.toBigDecimal(w + 2), w, RoundingMode.HALF_EVEN);
+                BigDecimal error = BigDecimal.ONE.movePointLeft(w - 3);
+                BigDecimal low = value.subtract(error).setScale(scale, rm);
+                if (low.compareTo(value.add(error).setScale(scale, rm)) == 0) {
+                    return new ExtDecimal(low);
+                }
+                guard *= 2;
+            }
+        } else if (type == Type.POSITIVEZERO) {
+            return NEGATIVEINFINITY;
+        } else if (type == Type.INFINITY) {
+            return INFINITY;
         } else {
-            // Verfahren noch unbekannt
-            // Arithmetisch-geometrisches Mittel angestrebt.
-            throw new UnsupportedOperationException("Not yet implemented");
+            throw new UnsupportedOperationException("log10 of " + type);
         }
     }
-
     /**
      * Returns an {@code ExtDecimal} whose value is <tt>ln(this)</tt>, and whose
-     * scale is {@code scale}. If {@code this} is negative or 0 it throws an
-     * ArithmeticException.
+     * scale is {@code scale}, rounded with {@code rm}. If {@code this} is
+     * negative or 0 it throws an ArithmeticException.
+     *
+     * The logarithm is calculated with the arithmetic-geometric mean, see
+     * {@link #ln(BigDecimal, int)}. The working precision is raised until the
+     * error bound allows the correct rounding.
      *
      * @param scale scale of the {@code ExtDecimal} ln to be returned.
+     * @param rm rounding mode to apply.
      * @throws ArithmeticException
      * @return {@code ln(this)}
      */
     public ExtDecimal ln(int scale, RoundingMode rm) {
         if (type == Type.NUMBER) {
-            if (compareTo(ZERO) < 0) {
+            if (content().signum() < 0) {
                 throw new ArithmeticException("Logarithm of a negative number in a real context");
-            } else if (compareTo(ZERO) == 0) {
+            } else if (content().signum() == 0) {
                 throw new ArithmeticException("Logarithm of 0");
-            } else if (compareTo(ONE) == 0) {
-                return ZERO;
-            } else if (compareTo(E) == 0) {
-                return ONE;
-            } else {
-                ExtDecimal sum = ExtDecimal.ZERO;
-                int limit = scale;
-                for (int i = 0; i <= limit; i++) {
-                    ExtDecimal augend = this.dec().divide(this.inc(), scale + 2, RoundingMode.HALF_DOWN).pow(2 * i + 1).divide(ExtDecimal.valueOf(2 * i + 1), scale + 2, RoundingMode.HALF_UP);
-                    //System.out.println(augend);
-                    sum = sum.add(augend);
+            } else if (content().compareTo(BigDecimal.ONE) == 0) {
+                return new ExtDecimal(BigDecimal.ZERO.setScale(scale));
+            }
+            int guard = 10;
+            while (true) {
+                int w = scale + guard;
+                BigDecimal value = ln(content(), w);
+                BigDecimal error = BigDecimal.ONE.movePointLeft(w - 3);
+                BigDecimal low = value.subtract(error).setScale(scale, rm);
+                if (low.compareTo(value.add(error).setScale(scale, rm)) == 0) {
+                    return new ExtDecimal(low);
                 }
-                return sum.multiply(ExtDecimal.TWO).setScale(scale, RoundingMode.DOWN);
+                guard *= 2;
             }
         } else if (type == Type.POSITIVEZERO) {
             return NEGATIVEINFINITY;
         } else if (type == Type.INFINITY) {
             return INFINITY;
         } else {
-            throw new UnsupportedOperationException("exp of ".toString());
+            throw new UnsupportedOperationException("ln of " + type);
         }
     }
 
     /**
-     * Returns an {@code ExtDecimal} whose value is <tt>exp(this)</tt>, and
-     * whose scale is {@code scale}.
+     * Returns ln(x) for {@code x > 0} with the scale {@code scale} and an error
+     * below 10^-(scale - 3).
      *
-     * @param scale scale of the {@code ExtDecimal} ln to be returned.
-     * @throws ArithmeticException
+     * For large s, ln(s) = pi / (2 AGM(1, 4/s)) with a relative error of
+     * O(1/s^2). With s = x 2^k near 2^m > 10^(scale/2):
+     *
+     * ln(x) = pi / (2 AGM(1, 4/s)) - k ln2.
+     *
+     * The AGM needs about log2(scale) steps with a square root, so the cost
+     * is O(M(n) log n). pi and ln2 come from {@link Constant}. A decimal
+     * exponent e of x is split off first, ln(x) = ln(x 10^-e) + e ln10, so
+     * the binary shift stays small.
+     *
+     * @param x
+     * @param scale
+     * @return {@code ln(x)}
+     */
+    static BigDecimal ln(BigDecimal x, int scale) {
+        int e = x.precision() - x.scale() - 1;
+        if (e != 0) {
+            // errors below 10^-(scale - 2) and 10^-(scale + 1), and the rounding
+            BigDecimal ln10 = Constant.LN10.toBigDecimal(scale + Integer.toString(Math.abs(e)).length() + 2);
+            return ln(x.movePointLeft(e), scale + 1).add(ln10.multiply(BigDecimal.valueOf(e)))
+                    .setScale(scale, RoundingMode.HALF_EVEN);
+        }
+        int m = (int) Math.ceil((scale / 2.0 + 6) / Math.log10(2));
+        // the result is about 1.2 m / AGM
+        MathContext mc = new MathContext(scale + Integer.toString(m).length() + 5, RoundingMode.HALF_EVEN);
+        double log2 = (x.unscaledValue().bitLength() - 1) - x.scale() * (Math.log(10) / Math.log(2));
+        long k = m - (long) Math.floor(log2);
+        BigDecimal mean = agm(BigDecimal.ONE, BigDecimal.valueOf(4).divide(shiftBinary(x, k), mc), mc);
+        BigDecimal lns = Constant.PI.toBigDecimal(mc.getPrecision()).divide(mean.multiply(BigDecimal.valueOf(2)), mc);
+        int digitsOfK = Long.toString(Math.abs(k)).length();
+        return lns.subtract(Constant.LN2.toBigDecimal(scale + digitsOfK + 2).multiply(BigDecimal.valueOf(k))).setScale(scale, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Returns the arithmetic-geometric mean of a and b with the precision of
+     * {@code mc}. The precision is relative, since b can be very small.
+     */
+    private static BigDecimal agm(BigDecimal a, BigDecimal b, MathContext mc) {
+        a = a.round(mc);
+        b = b.round(mc);
+        BigDecimal tolerance = new BigDecimal(BigInteger.ONE, mc.getPrecision() - 2);
+        while (a.subtract(b).abs().compareTo(a.multiply(tolerance)) > 0) {
+            BigDecimal mean = a.add(b).divide(BigDecimal.valueOf(2)).round(mc);
+            b = sqrt(a.multiply(b), mc);
+            a = mean;
+        }
+        return a;
+    }
+
+    /**
+     * Returns sqrt(x) for {@code x >= 0} with the precision of {@code mc},
+     * truncated. The unscaled value is extended to twice the precision and an
+     * even scale, so the root is exact with {@link #isqrt(BigInteger)}.
+     */
+    static BigDecimal sqrt(BigDecimal x, MathContext mc) {
+        if (x.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        int shift = 2 * mc.getPrecision() + 2 - x.precision();
+        if (((x.scale() + shift) & 1) != 0) {
+            shift++;
+        }
+        BigInteger n = shift >= 0 ? x.unscaledValue().multiply(powerOfTen(shift))
+                : x.unscaledValue().divide(powerOfTen(-shift));
+        return new BigDecimal(isqrt(n), (x.scale() + shift) / 2).round(mc);
+    }
+
+    /**
+     * Returns an {@code ExtDecimal} whose value is <tt>exp(this)</tt>, and
+     * whose scale is {@code scale}, rounded with {@code rm}.
+     *
+     * The argument is reduced to {@code this = k ln2 + r} with
+     * {@code |r| <= ln2 / 2}, and exp(r) is the product of the series for the
+     * blocks of 4, 4, 8, 16, ... decimal digits of r, each summed by binary
+     * splitting. The working precision is raised until the error bound
+     * allows the correct rounding.
+     *
+     * @param scale scale of the {@code ExtDecimal} exp to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException if the result is too large or
+     * {@code rm == RoundingMode.UNNECESSARY}.
      * @return {@code exp(this)}
      */
     public ExtDecimal exp(int scale, RoundingMode rm) {
         if (type == Type.NUMBER) {
-            ExtDecimal sum = ExtDecimal.ZERO;
-            int limit = 10;
-            for (int i = 0; i < limit; i++) {
-                ExtDecimal augend = this.pow(i).divide(ExtDecimal.valueOf(i).factorial(), scale, RoundingMode.HALF_DOWN);
-                sum = sum.add(augend);
+            if (content().signum() == 0) {
+                return new ExtDecimal(BigDecimal.ONE.setScale(scale, rm));
+            }
+            double x = content().doubleValue();
+            if (x < -(scale + 3) * Math.log(10)) {
+                // exp(this) < 10^-(scale + 2), only the rounding mode decides
+                return new ExtDecimal(new BigDecimal(BigInteger.ONE, scale + 2).setScale(scale, rm));
+            } else if (x > (Integer.MAX_VALUE >> 2) * Math.log(2)) {
+                throw new ArithmeticException("exp overflow");
+            }
+            long k = Math.round(x / Math.log(2));
+            int guard = 10;
+            while (true) {
+                // digits of 2^|k|
+                double digits = Math.abs(k) * Math.log10(2);
+                int s = k >= 0 ? scale + guard + (int) Math.ceil(digits) : Math.max(scale + guard - (int) digits, guard);
+                BigDecimal r = content().subtract(Constant.LN2.toBigDecimal(s + 12).multiply(BigDecimal.valueOf(k)));
+                BigDecimal value = shiftBinary(expReduced(r, s), k);
+                BigDecimal error = shiftBinary(BigDecimal.ONE.movePointLeft(s - 3), k);
+                BigDecimal low = value.subtract(error).setScale(scale, rm);
+                if (low.compareTo(value.add(error).setScale(scale, rm)) == 0) {
+                    return new ExtDecimal(low);
+                }
+                guard *= 2;
             }
-            return sum;
         } else if (type == Type.POSITIVEZERO) {
             return ONE;
         } else if (type == Type.NEGATIVEZERO) {
@@ -1526,20 +2143,442 @@ public class ExtDecimal extends VectorSpaceElement {
         }
     }
 
+    /**
+     * Returns an {@code ExtDecimal} whose value is <tt>sin(this)</tt>, and
+     * whose scale is {@code scale}, rounded with {@code rm}.
+     *
+     * The argument is reduced to {@code this = k pi/2 + r} with
+     * {@code |r| <= pi/4}, where pi has as many more digits as k has, and
+     * sin(r) and cos(r) are built from the blocks of 4, 4, 8, 16, ... decimal
+     * digits of r like {@link #exp(int, RoundingMode)}. The working precision
+     * is raised until the error bound allows the correct rounding.
+     *
+     * @param scale scale of the {@code ExtDecimal} sin to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException if {@code this} is infinite.
+     * @return {@code sin(this)}
+     */
+    public ExtDecimal sin(int scale, RoundingMode rm) {
+        return sinCos(scale, rm)[0];
+    }
+
+    /**
+     * Returns an {@code ExtDecimal} whose value is <tt>cos(this)</tt>, and
+     * whose scale is {@code scale}, rounded with {@code rm}, see
+     * {@link #sin(int, RoundingMode)}.
+     *
+     * @param scale scale of the {@code ExtDecimal} cos to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException if {@code this} is infinite.
+     * @return {@code cos(this)}
+     */
+    public ExtDecimal cos(int scale, RoundingMode rm) {
+        return sinCos(scale, rm)[1];
+    }
+
+    /**
+     * Returns <tt>{sin(this), cos(this)}</tt> with the scale {@code scale},
+     * rounded with {@code rm}. Both values come from one reduction and one
+     * evaluation, so they cost as much as one of them.
+     *
+     * @param scale scale of the values to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException if {@code this} is infinite.
+     * @return {@code {sin(this), cos(this)}}
+     */
+    public ExtDecimal[] sinCos(int scale, RoundingMode rm) {
+        if (type == Type.NUMBER) {
+            if (signumNumber() == 0) {
+                return new ExtDecimal[]{new ExtDecimal(BigDecimal.ZERO.setScale(scale)),
+                    new ExtDecimal(BigDecimal.ONE.setScale(scale))};
+            }
+            for (int guard = 10;; guard *= 2) {
+                int w = scale + guard;
+                BigDecimal[] sc = sinCos(content(), w);
+                BigDecimal error = BigDecimal.ONE.movePointLeft(w - 4);
+                ExtDecimal sin = roundOrNull(sc[0], error, scale, rm);
+                ExtDecimal cos = roundOrNull(sc[1], error, scale, rm);
+                if (sin != null && cos != null) {
+                    return new ExtDecimal[]{sin, cos};
+                }
+            }
+        } else if (type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO) {
+            return new ExtDecimal[]{this, ONE};
+        } else {
+            throw new ArithmeticException("sin and cos of infinity");
+        }
+    }
+
+    /**
+     * Returns an {@code ExtDecimal} whose value is <tt>tan(this)</tt>, and
+     * whose scale is {@code scale}, rounded with {@code rm}. The quotient of
+     * sin and cos, see {@link #sin(int, RoundingMode)}.
+     *
+     * @param scale scale of the {@code ExtDecimal} tan to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException if {@code this} is infinite.
+     * @return {@code tan(this)}
+     */
+    public ExtDecimal tan(int scale, RoundingMode rm) {
+        if (type == Type.NUMBER) {
+            if (signumNumber() == 0) {
+                return new ExtDecimal(BigDecimal.ZERO.setScale(scale));
+            }
+            for (int guard = 10;; guard *= 2) {
+                int w = scale + guard;
+                BigDecimal[] sc = sinCos(content(), w);
+                BigDecimal e = BigDecimal.ONE.movePointLeft(w - 4);
+                BigDecimal c = sc[1].abs().subtract(e);
+                if (c.compareTo(e) > 0) {
+                    // |s/c - S/C| <= e (1 + |s/c|) / (|c| - e) and the rounding
+                    BigDecimal t = sc[0].divide(sc[1], w, RoundingMode.HALF_EVEN);
+                    BigDecimal error = e.multiply(BigDecimal.ONE.add(t.abs())).divide(c, w, RoundingMode.UP).add(t.ulp());
+                    ExtDecimal result = roundOrNull(t, error, scale, rm);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+            }
+        } else if (type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO) {
+            return this;
+        } else {
+            throw new ArithmeticException("tan of infinity");
+        }
+    }
+
+    /**
+     * Returns an {@code ExtDecimal} whose value is <tt>atan(this)</tt>, and
+     * whose scale is {@code scale}, rounded with {@code rm}.
+     *
+     * For {@code |this| > 1} it uses atan(x) = pi/2 - atan(1/x). The value is
+     * found by Newton's method on tan with the precision doubled in every
+     * step, using the same sin and cos as {@link #sin(int, RoundingMode)}.
+     *
+     * @param scale scale of the {@code ExtDecimal} atan to be returned.
+     * @param rm rounding mode to apply.
+     * @return {@code atan(this)}
+     */
+    public ExtDecimal atan(int scale, RoundingMode rm) {
+        if (type == Type.NUMBER) {
+            if (signumNumber() == 0) {
+                return new ExtDecimal(BigDecimal.ZERO.setScale(scale));
+            }
+            for (int guard = 10;; guard *= 2) {
+                int w = scale + guard;
+                ExtDecimal result = roundOrNull(atan(content(), w), BigDecimal.ONE.movePointLeft(w - 5), scale, rm);
+                if (result != null) {
+                    return result;
+                }
+            }
+        } else if (type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO) {
+            return this;
+        } else {
+            // +-pi/2, correctly rounded like asin(+-1)
+            return (type == Type.INFINITY ? ONE : MINUSONE).asin(scale, rm);
+        }
+    }
+
+    /**
+     * Returns an {@code ExtDecimal} whose value is <tt>asin(this)</tt>, and
+     * whose scale is {@code scale}, rounded with {@code rm}. It is
+     * atan(x / sqrt(1 - x^2)), see {@link #atan(int, RoundingMode)}.
+     *
+     * @param scale scale of the {@code ExtDecimal} asin to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException if {@code |this| > 1}.
+     * @return {@code asin(this)}
+     */
+    public ExtDecimal asin(int scale, RoundingMode rm) {
+        if (type == Type.NUMBER) {
+            if (signumNumber() == 0) {
+                return new ExtDecimal(BigDecimal.ZERO.setScale(scale));
+            }
+            return arcSine(scale, rm, false);
+        } else if (type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO) {
+            return this;
+        } else {
+            throw new ArithmeticException("asin of infinity");
+        }
+    }
+
+    /**
+     * Returns an {@code ExtDecimal} whose value is <tt>acos(this)</tt>, and
+     * whose scale is {@code scale}, rounded with {@code rm}. It is
+     * pi/2 - asin(x), see {@link #asin(int, RoundingMode)}.
+     *
+     * @param scale scale of the {@code ExtDecimal} acos to be returned.
+     * @param rm rounding mode to apply.
+     * @throws ArithmeticException if {@code |this| > 1}.
+     * @return {@code acos(this)}
+     */
+    public ExtDecimal acos(int scale, RoundingMode rm) {
+        if (type == Type.NUMBER) {
+            return arcSine(scale, rm, true);
+        } else if (type == Type.POSITIVEZERO || type == Type.NEGATIVEZERO) {
+            return ZERO.arcSine(scale, rm, true);
+        } else {
+            throw new ArithmeticException("acos of infinity");
+        }
+    }
+
+    /**
+     * Returns asin(this) or acos(this) = pi/2 - asin(this).
+     */
+    private ExtDecimal arcSine(int scale, RoundingMode rm, boolean complement) {
+        BigDecimal x = content();
+        int compare = x.abs().compareTo(BigDecimal.ONE);
+        if (compare > 0) {
+            throw new ArithmeticException("asin of a number > 1");
+        } else if (complement && compare == 0 && x.signum() > 0) {
+            return new ExtDecimal(BigDecimal.ZERO.setScale(scale));
+        }
+        for (int guard = 10;; guard *= 2) {
+            int w = scale + guard;
+            BigDecimal halfPi = Constant.PI.toBigDecimal(w + 1).divide(BigDecimal.valueOf(2));
+            BigDecimal value;
+            if (compare == 0) {
+                value = x.signum() > 0 ? halfPi : halfPi.negate();
+            } else {
+                // c has an error below 10^-w which changes the result by at most
+                // |x| |dc| c / c' <= 2 |dc| because 1 + t^2 = 1 / c^2
+                BigDecimal c = new ExtDecimal(BigDecimal.ONE.subtract(x.multiply(x))).sqrt(w).toBigDecimal();
+                if (c.compareTo(BigDecimal.ONE.movePointLeft(w - 1)) <= 0) {
+                    continue;
+                }
+                value = atan(x.divide(c, w + 2, RoundingMode.HALF_EVEN), w);
+            }
+            if (complement) {
+                value = halfPi.subtract(value);
+            }
+            ExtDecimal result = roundOrNull(value, BigDecimal.ONE.movePointLeft(w - 6), scale, rm);
+            if (result != null) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns the rounding of {@code value} to {@code scale} if every number
+     * within {@code error} of it has the same rounding, null otherwise.
+     */
+    private static ExtDecimal roundOrNull(BigDecimal value, BigDecimal error, int scale, RoundingMode rm) {
+        BigDecimal low = value.subtract(error).setScale(scale, rm);
+        return low.compareTo(value.add(error).setScale(scale, rm)) == 0 ? new ExtDecimal(low) : null;
+    }
+
+    /**
+     * Returns {sin(x), cos(x)}, each with an error below 10^-(scale - 4). x is
+     * reduced by k pi/2, where pi gets as many more digits as k has before the
+     * decimal point, so the error of k pi/2 stays below 10^-(scale + 3).
+     */
+    static BigDecimal[] sinCos(BigDecimal x, int scale) {
+        int digits = Math.max(0, x.precision() - x.scale()) + 1;
+        BigDecimal halfPi = Constant.PI.toBigDecimal(scale + digits + 3).divide(BigDecimal.valueOf(2));
+        BigInteger k = x.divide(halfPi, 0, RoundingMode.HALF_EVEN).toBigInteger();
+        BigDecimal r = k.signum() == 0 ? x : x.subtract(halfPi.multiply(new BigDecimal(k)));
+        BigDecimal[] sc = sinCosReduced(r, scale);
+        BigDecimal sin = sc[0];
+        BigDecimal cos = sc[1];
+        switch (k.intValue() & 3) {
+            case 1:
+                return new BigDecimal[]{cos, sin.negate()};
+            case 2:
+                return new BigDecimal[]{sin.negate(), cos.negate()};
+            case 3:
+                return new BigDecimal[]{cos.negate(), sin};
+            default:
+                return new BigDecimal[]{sin, cos};
+        }
+    }
+
+    /**
+     * Returns {sin(r), cos(r)} for {@code |r| <= pi/4} with an error below
+     * 10^-(scale - 3). For every block of digits b of r as in
+     * {@link #expReduced(BigDecimal, int)}, sin(b) is summed by binary
+     * splitting and cos(b) = sqrt(1 - sin(b)^2), the blocks are combined by
+     * the addition theorems.
+     */
+    private static BigDecimal[] sinCosReduced(BigDecimal r, int scale) {
+        BigInteger u = r.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue();
+        MathContext mc = new MathContext(scale + 2, RoundingMode.HALF_EVEN);
+        BigDecimal sin = BigDecimal.ZERO;
+        BigDecimal cos = BigDecimal.ONE;
+        BigInteger previous = BigInteger.ZERO;
+        int start = 0;
+        int end = 4;
+        while (start < scale) {
+            end = Math.min(end, scale);
+            BigInteger high = u.divide(powerOfTen(scale - end));
+            BigInteger block = high.subtract(previous.multiply(powerOfTen(end - start)));
+            if (block.signum() != 0) {
+                // the sine series has about half the terms of the exponential series
+                long terms = BinarySplitting.expTerms(block.bitLength() * Math.log10(2) - end, scale + 1) / 2 + 2;
+                BigDecimal s = new BinarySplitting.Sin(block, powerOfTen(end)).sum(terms, scale + 1);
+                BigDecimal c = sqrt(BigDecimal.ONE.subtract(s.multiply(s)), mc);
+                BigDecimal newSin = sin.multiply(c).add(cos.multiply(s)).setScale(scale, RoundingMode.HALF_EVEN);
+                cos = cos.multiply(c).subtract(sin.multiply(s)).setScale(scale, RoundingMode.HALF_EVEN);
+                sin = newSin;
+            }
+            previous = high;
+            start = end;
+            end *= 2;
+        }
+        return new BigDecimal[]{sin, cos};
+    }
+
+    /**
+     * Returns atan(x) with an error below 10^-(scale - 5).
+     */
+    private static BigDecimal atan(BigDecimal x, int scale) {
+        if (x.abs().compareTo(BigDecimal.ONE) > 0) {
+            // 1/x has an error below 10^-(scale + 2), atan has a slope <= 1
+            BigDecimal halfPi = Constant.PI.toBigDecimal(scale + 3).divide(BigDecimal.valueOf(2));
+            BigDecimal y = atanReduced(BigDecimal.ONE.divide(x, scale + 2, RoundingMode.HALF_EVEN), scale);
+            return (x.signum() > 0 ? halfPi : halfPi.negate()).subtract(y).setScale(scale, RoundingMode.HALF_EVEN);
+        }
+        return atanReduced(x, scale);
+    }
+
+    /**
+     * Returns atan(x) for {@code |x| <= 1} with an error below
+     * 10^-(scale - 4). Newton's step for tan(y) = x is
+     * y' = y + cos(y) (x cos(y) - sin(y)).
+     */
+    private static BigDecimal atanReduced(BigDecimal x, int scale) {
+        BigDecimal y = new BigDecimal(Math.atan(x.doubleValue()));
+        // Half of the digits are enough, the checked step below doubles them
+        int half = scale / 2 + 10;
+        for (int p = 14; p < half; ) {
+            p = Math.min(2 * p, half);
+            BigDecimal[] sc = sinCos(y, p + 5);
+            y = y.add(sc[1].multiply(x.multiply(sc[1]).subtract(sc[0]))).setScale(p + 5, RoundingMode.HALF_EVEN);
+        }
+        BigDecimal e = BigDecimal.ONE.movePointLeft(scale + 1);
+        BigDecimal limit = BigDecimal.ONE.movePointLeft(scale - 4);
+        while (true) {
+            BigDecimal[] sc = sinCos(y, scale + 5);
+            BigDecimal residual = x.multiply(sc[1]).subtract(sc[0]);
+            // |atan(x) - y| <= |x - tan(y)| <= (|x c - s| + 2e) / (c - e) = d
+            BigDecimal d = residual.abs().add(e.multiply(BigDecimal.valueOf(2))).divide(sc[1].subtract(e), scale + 5, RoundingMode.UP);
+            y = y.add(sc[1].multiply(residual)).setScale(scale + 5, RoundingMode.HALF_EVEN);
+            // The step maps an error d to at most 2 d^2, |g''| <= 2 + 2|x|,
+            // and adds the errors 3e of sin and cos and the rounding
+            BigDecimal error = d.multiply(d).multiply(BigDecimal.valueOf(2)).add(e.multiply(BigDecimal.valueOf(4)));
+            if (error.compareTo(limit) < 0) {
+                return y;
+            }
+        }
+    }
+
+    /**
+     * Returns exp(r) for a small {@code r} with an error below
+     * {@code 10^-(scale - 2)}. The digits of r are split into blocks at the
+     * positions 4, 8, 16, 32, ... after the decimal point. The block ending
+     * at position e is smaller than 10^-(e/2), so its series needs only about
+     * 2 scale / e terms, while its numerator has e/2 digits.
+     *
+     * @param r
+     * @param scale
+     * @return {@code exp(r)}
+     */
+    private static BigDecimal expReduced(BigDecimal r, int scale) {
+        BigInteger u = r.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue();
+        BigDecimal result = BigDecimal.ONE;
+        BigInteger previous = BigInteger.ZERO;
+        int start = 0;
+        int end = 4;
+        while (start < scale) {
+            end = Math.min(end, scale);
+            // the digits at the positions start + 1, ..., end
+            BigInteger high = u.divide(powerOfTen(scale - end));
+            BigInteger block = high.subtract(previous.multiply(powerOfTen(end - start)));
+            if (block.signum() != 0) {
+                long terms = BinarySplitting.expTerms(block.bitLength() * Math.log10(2) - end, scale + 1);
+                BigDecimal factor = new BinarySplitting.Exp(block, powerOfTen(end)).sum(terms, scale + 1);
+                result = result.multiply(factor).setScale(scale, RoundingMode.HALF_EVEN);
+            }
+            previous = high;
+            start = end;
+            end *= 2;
+        }
+        return result;
+    }
+
+    /**
+     * Returns x * 2^k exactly, 2^-k is written as 5^k / 10^k.
+     *
+     * @param x
+     * @param k
+     * @return {@code x * 2^k}
+     * @throws ArithmeticException if {@code |k| > Integer.MAX_VALUE}
+     */
+    static BigDecimal shiftBinary(BigDecimal x, long k) {
+        if (Math.abs(k) > Integer.MAX_VALUE) {
+            throw new ArithmeticException("Binary shift out of range: " + k);
+        }
+        BigInteger u = x.unscaledValue();
+        if (k >= 0) {
+            return new BigDecimal(u.shiftLeft(Math.toIntExact(k)), x.scale());
+        } else if (u.signum() == 0) {
+            return x;
+        }
+        // the trailing zero bits are divided exactly, the rest is 5^k / 10^k
+        int shift = (int) Math.min(-k, u.getLowestSetBit());
+        int rest = Math.toIntExact(-k) - shift;
+        if ((long) x.scale() + rest > Integer.MAX_VALUE) {
+            throw new ArithmeticException("Scale out of range in binary shift by " + k);
+        }
+        return new BigDecimal(u.shiftRight(shift).multiply(powerOfFive(rest)), x.scale() + rest);
+    }
+
+    /**
+     * Returns 10^n for {@code n >= 0}. The powers below
+     * {@link #POWERCACHESIZE} are cached.
+     *
+     * @param n
+     * @return {@code 10^n}
+     */
+    static BigInteger powerOfTen(int n) {
+        return power(POWERSOFTEN, BigInteger.TEN, n);
+    }
+
+    /**
+     * Returns 5^n for {@code n >= 0}, cached like {@link #powerOfTen(int)}.
+     *
+     * @param n
+     * @return {@code 5^n}
+     */
+    static BigInteger powerOfFive(int n) {
+        return power(POWERSOFFIVE, BigInteger.valueOf(5), n);
+    }
+
+    private static BigInteger power(BigInteger[] cache, BigInteger base, int n) {
+        if (n >= cache.length) {
+            return base.pow(n);
+        }
+        // BigInteger is immutable, a race only computes a value twice
+        BigInteger p = cache[n];
+        if (p == null) {
+            p = base.pow(n);
+            cache[n] = p;
+        }
+        return p;
+    }
+
     /**
      * Returns an {@code ExtDecimal} whose value is <tt>floor(this)!</tt>. If {@code this}
-     * is negative it returns 1.
+     * is negative it returns 1. See {@link SmallFunctions#factorial(int)}.
      *
-     * @throws ArithmeticException
+     * @throws ArithmeticException if {@code this} exceeds the {@code int} range
      * @return {@code this!}
      */
-    private ExtDecimal factorial() {
+    public ExtDecimal factorial() {
         if (type == Type.NUMBER) {
-            if (compareTo(ONE) != 1) {
+            if (content().signum() <= 0) {
                 return ONE;
-            } else {
-                return multiply(dec().factorial());
             }
+            int n = content().setScale(0, RoundingMode.FLOOR).intValueExact();
+            return new ExtDecimal(new BigDecimal(SmallFunctions.factorial(n)));
         } else if (type == Type.POSITIVEZERO) {
             return ONE;
         } else if (type == Type.NEGATIVEZERO) {
@@ -1547,7 +2586,7 @@ public class ExtDecimal extends VectorSpaceElement {
         } else if (type == Type.INFINITY) {
             return INFINITY;
         } else {
-            throw new UnsupportedOperationException("Factorial of ".toString());
+            throw new UnsupportedOperationException("Factorial of " + type);
         }
     }
 
@@ -1591,6 +2630,26 @@ public class ExtDecimal extends VectorSpaceElement {
         }
     }
 
+    /**
+     * Returns the value of pi with a scale of 200. More digits are available
+     * from {@link Constant#PI}. The value is computed on first use.
+     *
+     * @return pi
+     */
+    public static ExtDecimal pi() {
+        return Constants.PI;
+    }
+
+    /**
+     * Returns the value of e with a scale of 1105. More digits are available
+     * from {@link Constant#E}. The value is computed on first use.
+     *
+     * @return e
+     */
+    public static ExtDecimal e() {
+        return Constants.E;
+    }
+
     /**
      * The overridden toString-function
      *
@@ -1598,6 +2657,17 @@ public class ExtDecimal extends VectorSpaceElement {
      */
     @Override
     public String toString() {
-        return content.toString();
+        return content().toString();
+    }
+
+    /**
+     * Holds pi and e, so they are computed on first use and not while
+     * {@code ExtDecimal} is initialized. The initialization may be triggered
+     * by a thread which computes a {@link Constant} and holds its lock.
+     */
+    private static final class Constants {
+
+        static final ExtDecimal PI = Constant.PI.value(200);
+        static final ExtDecimal E = Constant.E.value(1105);
     }
 }
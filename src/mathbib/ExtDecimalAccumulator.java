@@ -0,0 +1,435 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * A mutable accumulator for exact sums and dot products of {@code ExtDecimal}
+ * values. The sum is kept as a two's complement integer in a growable
+ * {@code long[]} together with a common scale, so adding a value does not
+ * create a new {@code ExtDecimal} or {@code BigDecimal}. Only
+ * {@link #toExtDecimal()} builds the result. The sum is exact, its scale is
+ * the largest scale of the added values and products like with
+ * {@link ExtDecimal#add(ExtDecimal)}.
+ *
+ * Special values are summed separately with the rules of
+ * {@link ExtDecimal#add(ExtDecimal)} and combined with the number at the end.
+ *
+ * An accumulator is not thread-safe.
+ */
+public class ExtDecimalAccumulator {
+
+    /**
+     * 10^0 to 10^18.
+     */
+    private static final long[] POWERSOFTEN = new long[19];
+
+    static {
+        POWERSOFTEN[0] = 1;
+        for (int i = 1; i < POWERSOFTEN.length; i++) {
+            POWERSOFTEN[i] = POWERSOFTEN[i - 1] * 10;
+        }
+    }
+    /**
+     * The sum in two's complement, least significant word first. The words
+     * from {@code length} on are the sign extension.
+     */
+    private long[] words = new long[4];
+    private int length = 1;
+    private int scale;
+    /**
+     * Magnitude of the value to be added.
+     */
+    private long[] scratch = new long[4];
+    private int scratchLength;
+    /**
+     * Sum of the special values, null if there was none.
+     */
+    private ExtDecimal special;
+
+    /**
+     * Constructs an accumulator with the value 0.
+     */
+    public ExtDecimalAccumulator() {
+    }
+
+    /**
+     * Sets the accumulator to 0 with scale 0, the arrays are kept.
+     *
+     * @return {@code this}
+     */
+    public ExtDecimalAccumulator reset() {
+        for (int i = 0; i < length; i++) {
+            words[i] = 0;
+        }
+        length = 1;
+        scale = 0;
+        special = null;
+        return this;
+    }
+
+    /**
+     * Adds {@code augend} to the accumulator.
+     *
+     * @param augend
+     * @return {@code this}
+     */
+    public ExtDecimalAccumulator add(ExtDecimal augend) {
+        if (augend.isCompact()) {
+            addCompact(augend, false);
+            return this;
+        }
+        BigDecimal value = augend.toBigDecimal();
+        if (value == null) {
+            addSpecial(augend);
+        } else {
+            add(value.unscaledValue(), value.scale(), false);
+        }
+        return this;
+    }
+
+    /**
+     * Subtracts {@code subtrahend} from the accumulator.
+     *
+     * @param subtrahend
+     * @return {@code this}
+     */
+    public ExtDecimalAccumulator subtract(ExtDecimal subtrahend) {
+        if (subtrahend.isCompact()) {
+            addCompact(subtrahend, true);
+            return this;
+        }
+        BigDecimal value = subtrahend.toBigDecimal();
+        if (value == null) {
+            addSpecial(subtrahend.negate());
+        } else {
+            add(value.unscaledValue(), value.scale(), true);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the exact product {@code a * b} to the accumulator (fused
+     * multiply-add). The product has the scale {@code a.scale() + b.scale()}.
+     *
+     * @param a
+     * @param b
+     * @return {@code this}
+     * @throws ArithmeticException for the product of 0 and an infinite value
+     */
+    public ExtDecimalAccumulator multiplyAdd(ExtDecimal a, ExtDecimal b) {
+        if (a.isCompact() && b.isCompact() && a.compactHigh() == a.compactLow() >> 63
+                && b.compactHigh() == b.compactLow() >> 63) {
+            multiplyAdd(a.compactLow(), b.compactLow(), a.scale() + b.scale());
+            return this;
+        }
+        BigDecimal x = a.toBigDecimal();
+        BigDecimal y = b.toBigDecimal();
+        if (x == null || y == null) {
+            ExtDecimal product = specialProduct(a, b);
+            if (product != null) {
+                addSpecial(product);
+            }
+            return this;
+        }
+        BigInteger u = x.unscaledValue();
+        BigInteger v = y.unscaledValue();
+        int s = x.scale() + y.scale();
+        if (u.bitLength() < 64 && v.bitLength() < 64) {
+            multiplyAdd(u.longValue(), v.longValue(), s);
+        } else {
+            add(u.multiply(v), s, false);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the exact dot product of {@code a} and {@code b} to the
+     * accumulator.
+     *
+     * @param a
+     * @param b
+     * @return {@code this}
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    public ExtDecimalAccumulator dotAdd(ExtDecimal[] a, ExtDecimal[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Different lengths " + a.length + " and " + b.length);
+        }
+        for (int i = 0; i < a.length; i++) {
+            multiplyAdd(a[i], b[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the exact dot product of {@code a} and {@code b}.
+     *
+     * @param a
+     * @param b
+     * @return {@code sum a[i] * b[i]}
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    public static ExtDecimal dot(ExtDecimal[] a, ExtDecimal[] b) {
+        return new ExtDecimalAccumulator().dotAdd(a, b).toExtDecimal();
+    }
+
+    /**
+     * Returns the largest scale added so far.
+     *
+     * @return the scale of the sum
+     */
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * Returns the sum as {@code ExtDecimal}. The accumulator can be used
+     * further.
+     *
+     * @return the sum
+     */
+    public ExtDecimal toExtDecimal() {
+        byte[] bytes = new byte[8 * length];
+        for (int i = 0; i < length; i++) {
+            long w = words[i];
+            for (int j = 0; j < 8; j++) {
+                bytes[bytes.length - 1 - 8 * i - j] = (byte) (w >>> (8 * j));
+            }
+        }
+        ExtDecimal number = new ExtDecimal(new BigDecimal(new BigInteger(bytes), scale));
+        return special == null ? number : special.add(number);
+    }
+
+    @Override
+    public String toString() {
+        return toExtDecimal().toString();
+    }
+
+    private void addSpecial(ExtDecimal value) {
+        special = special == null ? value : special.add(value);
+    }
+
+    /**
+     * Returns the product if one factor is a special value, null for the
+     * exact 0.
+     */
+    private static ExtDecimal specialProduct(ExtDecimal a, ExtDecimal b) {
+        boolean infinite = (a.toBigDecimal() == null && !a.isZero()) || (b.toBigDecimal() == null && !b.isZero());
+        boolean negative = a.isNegative() != b.isNegative();
+        if (infinite) {
+            if (a.isZero() || b.isZero()) {
+                throw new ArithmeticException("Product of 0 and infinity");
+            }
+            return negative ? ExtDecimal.NEGATIVEINFINITY : ExtDecimal.INFINITY;
+        } else if ((a.toBigDecimal() != null && a.isZero()) || (b.toBigDecimal() != null && b.isZero())) {
+            return null;
+        }
+        return negative ? ExtDecimal.NEGATIVEZERO : ExtDecimal.POSITIVEZERO;
+    }
+
+    /**
+     * Adds the unscaled value {@code value} with the scale {@code s}.
+     */
+    void add(long value, int s) {
+        if (value == 0) {
+            if (s > scale) {
+                rescale(s);
+            }
+            return;
+        }
+        // Math.abs(Long.MIN_VALUE) is 2^63 as unsigned word
+        scratch[0] = Math.abs(value);
+        scratchLength = 1;
+        addScratch(s, value < 0);
+    }
+
+    /**
+     * Adds the product of two unscaled values with the scale {@code s}.
+     */
+    void multiplyAdd(long p, long q, int s) {
+        boolean negative = (p < 0) != (q < 0);
+        p = Math.abs(p);
+        q = Math.abs(q);
+        scratch[0] = p * q;
+        scratch[1] = ExtDecimal.multiplyHigh(p, q);
+        scratchLength = scratch[1] == 0 ? 1 : 2;
+        addScratch(s, negative);
+    }
+
+    /**
+     * Adds a number in compact form, its unscaled value is below 2^127 in
+     * absolute value.
+     */
+    private void addCompact(ExtDecimal value, boolean negate) {
+        long h = value.compactHigh();
+        long l = value.compactLow();
+        boolean negative = h < 0;
+        if (negative) {
+            l = -l;
+            h = l == 0 ? -h : ~h;
+        }
+        scratch[0] = l;
+        scratch[1] = h;
+        scratchLength = h == 0 ? 1 : 2;
+        addScratch(value.scale(), negative != negate);
+    }
+
+    private void add(BigInteger value, int s, boolean negate) {
+        int signum = value.signum();
+        if (signum == 0) {
+            if (s > scale) {
+                rescale(s);
+            }
+            return;
+        }
+        if (value.bitLength() < 64) {
+            scratch[0] = Math.abs(value.longValue());
+            scratchLength = 1;
+        } else {
+            byte[] bytes = value.abs().toByteArray();
+            int n = (bytes.length + 7) / 8;
+            ensureScratch(n);
+            scratchLength = n;
+            for (int i = 0; i < scratchLength; i++) {
+                long w = 0;
+                for (int j = 7; j >= 0; j--) {
+                    int k = bytes.length - 1 - 8 * i - j;
+                    w = (w << 8) | (k >= 0 ? bytes[k] & 0xFF : 0);
+                }
+                scratch[i] = w;
+            }
+        }
+        addScratch(s, (signum < 0) != negate);
+    }
+
+    /**
+     * Adds the magnitude in {@code scratch} with the scale {@code s}.
+     */
+    private void addScratch(int s, boolean negative) {
+        if (s > scale) {
+            rescale(s);
+        } else if (s < scale) {
+            for (int d = scale - s; d > 0; d -= 18) {
+                ensureScratch(scratchLength + 1);
+                scratch[scratchLength] = 0;
+                long carry = multiplySmall(scratch, scratchLength, POWERSOFTEN[Math.min(d, 18)]);
+                if (carry != 0) {
+                    scratch[scratchLength++] = carry;
+                }
+            }
+        }
+        ensureLength(scratchLength + 2);
+        if (negative) {
+            long borrow = 0;
+            for (int i = 0; i < length; i++) {
+                if (i >= scratchLength && borrow == 0) {
+                    break;
+                }
+                long a = words[i];
+                long b = i < scratchLength ? scratch[i] : 0;
+                long d = a - b;
+                long next = Long.compareUnsigned(a, b) < 0 ? 1 : 0;
+                if (borrow != 0 && d == 0) {
+                    next = 1;
+                }
+                words[i] = d - borrow;
+                borrow = next;
+            }
+        } else {
+            long carry = 0;
+            for (int i = 0; i < length; i++) {
+                if (i >= scratchLength && carry == 0) {
+                    break;
+                }
+                long a = words[i];
+                long b = i < scratchLength ? scratch[i] : 0;
+                long sum = a + b;
+                long next = Long.compareUnsigned(sum, a) < 0 ? 1 : 0;
+                if (carry != 0 && sum == -1) {
+                    next = 1;
+                }
+                words[i] = sum + carry;
+                carry = next;
+            }
+        }
+    }
+
+    /**
+     * Multiplies the sum by 10^(s - scale).
+     */
+    private void rescale(int s) {
+        boolean negative = words[length - 1] < 0;
+        if (negative) {
+            negate();
+        }
+        for (int d = s - scale; d > 0; d -= 18) {
+            // 10^18 < 2^60, the new word takes the growth
+            ensureLength(length + 1);
+            multiplySmall(words, length, POWERSOFTEN[Math.min(d, 18)]);
+        }
+        if (negative) {
+            negate();
+        }
+        scale = s;
+    }
+
+    private void negate() {
+        long carry = 1;
+        for (int i = 0; i < length; i++) {
+            long w = ~words[i] + carry;
+            carry = carry != 0 && w == 0 ? 1 : 0;
+            words[i] = w;
+        }
+    }
+
+    /**
+     * Makes sure that at least n words are used, the new words get the sign
+     * extension.
+     */
+    private void ensureLength(int n) {
+        if (n > length) {
+            if (n > words.length) {
+                long[] w = new long[Math.max(n, 2 * words.length)];
+                System.arraycopy(words, 0, w, 0, length);
+                words = w;
+            }
+            long extension = words[length - 1] < 0 ? -1 : 0;
+            for (int i = length; i < n; i++) {
+                words[i] = extension;
+            }
+            length = n;
+        }
+    }
+
+    private void ensureScratch(int n) {
+        if (n > scratch.length) {
+            long[] w = new long[Math.max(n, 2 * scratch.length)];
+            System.arraycopy(scratch, 0, w, 0, scratchLength);
+            scratch = w;
+        }
+    }
+
+    /**
+     * Multiplies the unsigned number in a[0..n-1] by m and returns the carry
+     * word.
+     */
+    private static long multiplySmall(long[] a, int n, long m) {
+        long carry = 0;
+        for (int i = 0; i < n; i++) {
+            long low = a[i] * m;
+            long high = ExtDecimal.multiplyHigh(a[i], m);
+            long sum = low + carry;
+            if (Long.compareUnsigned(sum, low) < 0) {
+                high++;
+            }
+            a[i] = sum;
+            carry = high;
+        }
+        return carry;
+    }
+}
@@ -0,0 +1,596 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable array of {@code ExtDecimal} values in columnar form. The
+ * unscaled values and the scales are kept in a {@code long[]} and an
+ * {@code int[]}, so the elementwise operations work on primitives and create
+ * no object per element. An element whose unscaled value does not fit in a
+ * {@code long}, and every special value, is kept as {@code ExtDecimal} in a
+ * second array, which exists only if there is such an element. Results which
+ * do not fit in a {@code long} are computed with {@code ExtDecimal}.
+ *
+ * Every element of a result is equal in value and scale to the result of the
+ * corresponding {@code ExtDecimal} operation. Arrays with at least
+ * {@link #PARALLELTHRESHOLD} elements are processed in blocks in parallel.
+ */
+public final class ExtDecimalArray {
+
+    /**
+     * Smallest length processed in parallel.
+     */
+    public static final int PARALLELTHRESHOLD = 8192;
+    /**
+     * Number of elements of a block of the parallel processing.
+     */
+    private static final int BLOCKSIZE = 4096;
+    /**
+     * 10^0 to 10^18, and the largest values which can be multiplied by them.
+     */
+    private static final long[] POWERSOFTEN = new long[19];
+    private static final long[] LIMITS = new long[19];
+
+    static {
+        POWERSOFTEN[0] = 1;
+        LIMITS[0] = Long.MAX_VALUE;
+        for (int i = 1; i < POWERSOFTEN.length; i++) {
+            POWERSOFTEN[i] = POWERSOFTEN[i - 1] * 10;
+            LIMITS[i] = Long.MAX_VALUE / POWERSOFTEN[i];
+        }
+    }
+    private final long[] unscaled;
+    private final int[] scales;
+    /**
+     * The elements which are not kept in {@code unscaled}, null if there is
+     * none.
+     */
+    private final ExtDecimal[] wide;
+
+    /**
+     * Constructs an array with the values {@code values}.
+     *
+     * @param values
+     */
+    public ExtDecimalArray(ExtDecimal... values) {
+        Target t = new Target(values.length);
+        for (int i = 0; i < values.length; i++) {
+            t.put(i, values[i]);
+        }
+        unscaled = t.unscaled;
+        scales = t.scales;
+        wide = t.wide;
+    }
+
+    private ExtDecimalArray(long[] unscaled, int[] scales, ExtDecimal[] wide) {
+        this.unscaled = unscaled;
+        this.scales = scales;
+        this.wide = wide;
+    }
+
+    /**
+     * Returns the array of the numbers {@code unscaled[i] 10^-scale}.
+     *
+     * @param unscaled
+     * @param scale
+     * @return the array
+     */
+    public static ExtDecimalArray valueOf(long[] unscaled, int scale) {
+        int[] scales = new int[unscaled.length];
+        Arrays.fill(scales, scale);
+        return new ExtDecimalArray(unscaled.clone(), scales, null);
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return length
+     */
+    public int length() {
+        return unscaled.length;
+    }
+
+    /**
+     * Returns the element {@code i}.
+     *
+     * @param i
+     * @return {@code this[i]}
+     */
+    public ExtDecimal get(int i) {
+        if (wide != null && wide[i] != null) {
+            return wide[i];
+        }
+        return new ExtDecimal(BigDecimal.valueOf(unscaled[i], scales[i]));
+    }
+
+    /**
+     * Returns the elements as {@code ExtDecimal}s.
+     *
+     * @return the elements
+     */
+    public ExtDecimal[] toArray() {
+        final ExtDecimal[] values = new ExtDecimal[length()];
+        forBlocks(values.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                values[i] = get(i);
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Returns the elementwise sum, see {@link ExtDecimal#add(ExtDecimal)}.
+     *
+     * @param augend
+     * @return {@code this[i] + augend[i]}
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    public ExtDecimalArray add(ExtDecimalArray augend) {
+        return apply(augend, false, ADD);
+    }
+
+    /**
+     * Returns the elementwise difference, see
+     * {@link ExtDecimal#subtract(ExtDecimal)}.
+     *
+     * @param subtrahend
+     * @return {@code this[i] - subtrahend[i]}
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    public ExtDecimalArray subtract(ExtDecimalArray subtrahend) {
+        return apply(subtrahend, false, SUBTRACT);
+    }
+
+    /**
+     * Returns the elementwise product, see
+     * {@link ExtDecimal#multiply(ExtDecimal)}.
+     *
+     * @param multiplicand
+     * @return {@code this[i] * multiplicand[i]}
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    public ExtDecimalArray multiply(ExtDecimalArray multiplicand) {
+        return apply(multiplicand, false, MULTIPLY);
+    }
+
+    /**
+     * Returns every element multiplied by {@code multiplicand}.
+     *
+     * @param multiplicand
+     * @return {@code this[i] * multiplicand}
+     */
+    public ExtDecimalArray multiply(ExtDecimal multiplicand) {
+        return apply(new ExtDecimalArray(multiplicand), true, MULTIPLY);
+    }
+
+    /**
+     * Returns the elementwise quotient with the scale {@code scale}, see
+     * {@link ExtDecimal#divide(ExtDecimal, int, RoundingMode)}.
+     *
+     * @param divisor
+     * @param scale
+     * @param rm
+     * @return {@code this[i] / divisor[i]}
+     * @throws IllegalArgumentException if the lengths differ
+     * @throws ArithmeticException if a divisor is 0 or {@code rm} is
+     * {@code UNNECESSARY} and a quotient is inexact
+     */
+    public ExtDecimalArray divide(ExtDecimalArray divisor, int scale, RoundingMode rm) {
+        return apply(divisor, false, new Divide(scale, rm));
+    }
+
+    /**
+     * Returns every element divided by {@code divisor} with the scale
+     * {@code scale}, see
+     * {@link ExtDecimal#divide(ExtDecimal, int, RoundingMode)}.
+     *
+     * @param divisor
+     * @param scale
+     * @param rm
+     * @return {@code this[i] / divisor}
+     * @throws ArithmeticException if {@code divisor} is 0 or {@code rm} is
+     * {@code UNNECESSARY} and a quotient is inexact
+     */
+    public ExtDecimalArray divide(ExtDecimal divisor, int scale, RoundingMode rm) {
+        return apply(new ExtDecimalArray(divisor), true, new Divide(scale, rm));
+    }
+
+    /**
+     * Compares the elements, see {@link ExtDecimal#compareTo(ExtDecimal)}.
+     *
+     * @param val
+     * @return {@code this[i].compareTo(val[i])}, -1, 0 or 1
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    public int[] compareTo(final ExtDecimalArray val) {
+        checkLength(val);
+        final int[] result = new int[length()];
+        forBlocks(result.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if ((wide == null || wide[i] == null) && (val.wide == null || val.wide[i] == null)) {
+                    long a = unscaled[i];
+                    long b = val.unscaled[i];
+                    int sa = scales[i];
+                    int sb = val.scales[i];
+                    if (sa == sb || Long.signum(a) != Long.signum(b)) {
+                        result[i] = sa == sb ? Long.compare(a, b) : Integer.signum(Long.signum(a) - Long.signum(b));
+                        continue;
+                    }
+                    // Bring the smaller scale up if it fits
+                    long d = (long) sa - sb;
+                    if (d > 0 && d <= 18 && b != Long.MIN_VALUE && Math.abs(b) <= LIMITS[(int) d]) {
+                        result[i] = Long.compare(a, b * POWERSOFTEN[(int) d]);
+                        continue;
+                    } else if (d < 0 && d >= -18 && a != Long.MIN_VALUE && Math.abs(a) <= LIMITS[(int) -d]) {
+                        result[i] = Long.compare(a * POWERSOFTEN[(int) -d], b);
+                        continue;
+                    }
+                }
+                result[i] = get(i).compareTo(val.get(i));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the exact sum of the elements, see {@link ExtDecimalAccumulator}.
+     *
+     * @return {@code sum this[i]}
+     */
+    public ExtDecimal sum() {
+        return reduce(null);
+    }
+
+    /**
+     * Returns the exact dot product, see {@link ExtDecimalAccumulator}.
+     *
+     * @param val
+     * @return {@code sum this[i] * val[i]}
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    public ExtDecimal dotProduct(ExtDecimalArray val) {
+        checkLength(val);
+        return reduce(val);
+    }
+
+    /**
+     * Returns the largest element, null for an empty array.
+     *
+     * @return {@code max this[i]}
+     */
+    public ExtDecimal max() {
+        return extremum(1);
+    }
+
+    /**
+     * Returns the smallest element, null for an empty array.
+     *
+     * @return {@code min this[i]}
+     */
+    public ExtDecimal min() {
+        return extremum(-1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("[");
+        for (int i = 0; i < length(); i++) {
+            s.append(i == 0 ? "" : ", ").append(get(i));
+        }
+        return s.append(']').toString();
+    }
+
+    /**
+     * Sums the elements, or the products with the elements of {@code val} if
+     * it is not null. Every block has its own accumulator, the exact sums of
+     * the blocks are added in order.
+     */
+    private ExtDecimal reduce(final ExtDecimalArray val) {
+        if (length() == 0) {
+            return ExtDecimal.ZERO;
+        }
+        final ExtDecimal[] sums = new ExtDecimal[(length() + BLOCKSIZE - 1) / BLOCKSIZE];
+        forBlocks(length(), (from, to) -> {
+            ExtDecimalAccumulator accumulator = new ExtDecimalAccumulator();
+            for (int i = from; i < to; i++) {
+                boolean narrow = wide == null || wide[i] == null;
+                if (val == null) {
+                    if (narrow) {
+                        accumulator.add(unscaled[i], scales[i]);
+                    } else {
+                        accumulator.add(wide[i]);
+                    }
+                } else if (narrow && (val.wide == null || val.wide[i] == null)
+                        && (long) scales[i] + val.scales[i] == scales[i] + val.scales[i]) {
+                    accumulator.multiplyAdd(unscaled[i], val.unscaled[i], scales[i] + val.scales[i]);
+                } else {
+                    accumulator.multiplyAdd(get(i), val.get(i));
+                }
+            }
+            sums[from / BLOCKSIZE] = accumulator.toExtDecimal();
+        });
+        ExtDecimalAccumulator total = new ExtDecimalAccumulator();
+        for (ExtDecimal sum : sums) {
+            if (sum != null) {
+                total.add(sum);
+            }
+        }
+        return total.toExtDecimal();
+    }
+
+    /**
+     * Returns the first largest element for {@code sign = 1}, the first
+     * smallest for {@code sign = -1}.
+     */
+    private ExtDecimal extremum(int sign) {
+        if (length() == 0) {
+            return null;
+        }
+        int best = 0;
+        ExtDecimal bestValue = get(0);
+        for (int i = 1; i < length(); i++) {
+            boolean narrow = (wide == null || wide[i] == null) && (wide == null || wide[best] == null);
+            int cmp;
+            if (narrow && scales[i] == scales[best]) {
+                cmp = Long.compare(unscaled[i], unscaled[best]);
+            } else {
+                cmp = get(i).compareTo(bestValue);
+            }
+            if (cmp * sign > 0) {
+                best = i;
+                bestValue = get(i);
+            }
+        }
+        return bestValue;
+    }
+
+    private void checkLength(ExtDecimalArray val) {
+        if (val.length() != length()) {
+            throw new IllegalArgumentException("Different lengths " + length() + " and " + val.length());
+        }
+    }
+
+    /**
+     * Applies {@code op} to the elements of this and {@code y}, or to the
+     * elements of this and {@code y[0]} if {@code broadcast}.
+     */
+    private ExtDecimalArray apply(final ExtDecimalArray y, final boolean broadcast, final Operation op) {
+        if (!broadcast) {
+            checkLength(y);
+        }
+        final Target t = new Target(length());
+        forBlocks(length(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = broadcast ? 0 : i;
+                if ((wide != null && wide[i] != null) || (y.wide != null && y.wide[j] != null)
+                        || !op.apply(unscaled[i], scales[i], y.unscaled[j], y.scales[j], t, i)) {
+                    t.put(i, op.apply(get(i), y.get(j)));
+                }
+            }
+        });
+        return new ExtDecimalArray(t.unscaled, t.scales, t.wide);
+    }
+
+    /**
+     * Calls {@code block} for the elements {@code 0} to {@code n - 1}, from
+     * {@link #PARALLELTHRESHOLD} elements on in parallel for blocks of
+     * {@link #BLOCKSIZE} elements.
+     */
+    private static void forBlocks(final int n, final Block block) {
+        if (n < PARALLELTHRESHOLD) {
+            block.run(0, n);
+        } else {
+            IntStream.range(0, (n + BLOCKSIZE - 1) / BLOCKSIZE).parallel()
+                    .forEach(k -> block.run(k * BLOCKSIZE, Math.min(n, (k + 1) * BLOCKSIZE)));
+        }
+    }
+
+    private interface Block {
+
+        void run(int from, int to);
+    }
+
+    /**
+     * The arrays of a result. An element which does not fit in a
+     * {@code long} goes to {@code wide}, which is created by the first one.
+     */
+    private static final class Target {
+
+        private final long[] unscaled;
+        private final int[] scales;
+        private ExtDecimal[] wide;
+
+        Target(int n) {
+            unscaled = new long[n];
+            scales = new int[n];
+        }
+
+        void put(int i, ExtDecimal value) {
+            if (value.isCompact() && value.compactHigh() == value.compactLow() >> 63) {
+                unscaled[i] = value.compactLow();
+                scales[i] = value.scale();
+            } else {
+                putWide(i, value);
+            }
+        }
+
+        private synchronized void putWide(int i, ExtDecimal value) {
+            if (wide == null) {
+                wide = new ExtDecimal[unscaled.length];
+            }
+            wide[i] = value;
+        }
+    }
+
+    /**
+     * An elementwise operation on unscaled values, with {@code ExtDecimal}
+     * for the other cases.
+     */
+    private abstract static class Operation {
+
+        /**
+         * Stores the result of a 10^-sa and b 10^-sb as element {@code i} of
+         * {@code t}, returns false if it does not fit.
+         */
+        abstract boolean apply(long a, int sa, long b, int sb, Target t, int i);
+
+        abstract ExtDecimal apply(ExtDecimal a, ExtDecimal b);
+    }
+
+    private static final Operation ADD = new Operation() {
+        @Override
+        boolean apply(long a, int sa, long b, int sb, Target t, int i) {
+            return add(a, sa, b, sb, t, i);
+        }
+
+        @Override
+        ExtDecimal apply(ExtDecimal a, ExtDecimal b) {
+            return a.add(b);
+        }
+    };
+    private static final Operation SUBTRACT = new Operation() {
+        @Override
+        boolean apply(long a, int sa, long b, int sb, Target t, int i) {
+            return b != Long.MIN_VALUE && add(a, sa, -b, sb, t, i);
+        }
+
+        @Override
+        ExtDecimal apply(ExtDecimal a, ExtDecimal b) {
+            return a.subtract(b);
+        }
+    };
+    private static final Operation MULTIPLY = new Operation() {
+        @Override
+        boolean apply(long a, int sa, long b, int sb, Target t, int i) {
+            long s = (long) sa + sb;
+            long h = ExtDecimal.multiplyHigh(Math.abs(a), Math.abs(b));
+            long p = Math.abs(a) * Math.abs(b);
+            if (s != (int) s || h != 0 || p < 0) {
+                return false;
+            }
+            t.unscaled[i] = (a < 0) != (b < 0) ? -p : p;
+            t.scales[i] = (int) s;
+            return true;
+        }
+
+        @Override
+        ExtDecimal apply(ExtDecimal a, ExtDecimal b) {
+            return a.multiply(b);
+        }
+    };
+
+    /**
+     * Stores a 10^-sa + b 10^-sb with the larger scale.
+     */
+    private static boolean add(long a, int sa, long b, int sb, Target t, int i) {
+        if (sa < sb) {
+            long d = (long) sb - sa;
+            if (a != 0) {
+                if (d > 18 || a == Long.MIN_VALUE || Math.abs(a) > LIMITS[(int) d]) {
+                    return false;
+                }
+                a *= POWERSOFTEN[(int) d];
+            }
+            sa = sb;
+        } else if (sb < sa) {
+            long d = (long) sa - sb;
+            if (b != 0) {
+                if (d > 18 || b == Long.MIN_VALUE || Math.abs(b) > LIMITS[(int) d]) {
+                    return false;
+                }
+                b *= POWERSOFTEN[(int) d];
+            }
+        }
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) {
+            return false;
+        }
+        t.unscaled[i] = r;
+        t.scales[i] = sa;
+        return true;
+    }
+
+    /**
+     * The quotient with a fixed scale, rounded with a rounding mode.
+     */
+    private static final class Divide extends Operation {
+
+        private final int scale;
+        private final RoundingMode rm;
+
+        Divide(int scale, RoundingMode rm) {
+            this.scale = scale;
+            this.rm = rm;
+        }
+
+        @Override
+        boolean apply(long a, int sa, long b, int sb, Target t, int i) {
+            // a 10^-sa / (b 10^-sb) = a 10^e / b 10^-scale
+            long e = (long) scale - sa + sb;
+            if (b == 0 || a == Long.MIN_VALUE || b == Long.MIN_VALUE || e > 18 || e < -18) {
+                return false;
+            }
+            if (e >= 0) {
+                if (Math.abs(a) > LIMITS[(int) e]) {
+                    return false;
+                }
+                a *= POWERSOFTEN[(int) e];
+            } else {
+                if (Math.abs(b) > LIMITS[(int) -e]) {
+                    return false;
+                }
+                b *= POWERSOFTEN[(int) -e];
+            }
+            long q = a / b;
+            long r = a - q * b;
+            if (r != 0) {
+                int sign = (a < 0) == (b < 0) ? 1 : -1;
+                // |r| compared to |b| - |r|, so 2 |r| does not overflow
+                int half = Long.compare(Math.abs(r), Math.abs(b) - Math.abs(r));
+                if (increment(sign, half, (q & 1) != 0)) {
+                    q += sign;
+                }
+            }
+            t.unscaled[i] = q;
+            t.scales[i] = scale;
+            return true;
+        }
+
+        /**
+         * Returns true if the truncated quotient is rounded away from 0, the
+         * remainder is not 0.
+         */
+        private boolean increment(int sign, int half, boolean odd) {
+            switch (rm) {
+                case UP:
+                    return true;
+                case DOWN:
+                    return false;
+                case CEILING:
+                    return sign > 0;
+                case FLOOR:
+                    return sign < 0;
+                case HALF_UP:
+                    return half >= 0;
+                case HALF_DOWN:
+                    return half > 0;
+                case HALF_EVEN:
+                    return half > 0 || (half == 0 && odd);
+                default:
+                    throw new ArithmeticException("Rounding necessary");
+            }
+        }
+
+        @Override
+        ExtDecimal apply(ExtDecimal a, ExtDecimal b) {
+            return a.divide(b, scale, rm);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.function.IntFunction;
+
+/**
+ * A ball {@code [midpoint - radius, midpoint + radius]} of real numbers for
+ * rigorous error bounds (ball arithmetic). Every operation returns a ball
+ * which contains all results for arguments in the operand balls, the
+ * rounding errors of the midpoint are added to the radius. The midpoint is
+ * rounded to {@code precision} significant digits, the radius is kept with
+ * {@link #RADIUSDIGITS} digits and always rounded up.
+ *
+ * {@link #evaluate(IntFunction, int, RoundingMode)} evaluates an expression
+ * of balls with rising precision until the result can be rounded correctly,
+ * so only as many digits are computed as needed.
+ */
+public class ExtDecimalBall {
+
+    /**
+     * Significant digits of the radius.
+     */
+    public static final int RADIUSDIGITS = 5;
+    private static final MathContext RADIUS = new MathContext(RADIUSDIGITS, RoundingMode.CEILING);
+    private static final double LN10 = Math.log(10);
+    private final BigDecimal midpoint;
+    private final BigDecimal radius;
+    private final int precision;
+
+    /**
+     * Constructs the exact ball with radius 0. The value is not rounded, the
+     * operations round their results to {@code precision} digits.
+     *
+     * @param value
+     * @param precision number of significant digits of the midpoints
+     * @throws ArithmeticException if {@code value} is infinite
+     */
+    public ExtDecimalBall(ExtDecimal value, int precision) {
+        this(value, ExtDecimal.ZERO, precision);
+    }
+
+    /**
+     * Constructs the ball {@code [midpoint - radius, midpoint + radius]}.
+     *
+     * @param midpoint
+     * @param radius
+     * @param precision number of significant digits of the midpoints
+     * @throws ArithmeticException if {@code midpoint} or {@code radius} is
+     * infinite or the radius is negative
+     */
+    public ExtDecimalBall(ExtDecimal midpoint, ExtDecimal radius, int precision) {
+        this(finite(midpoint), finite(radius), precision);
+        if (this.radius.signum() < 0) {
+            throw new ArithmeticException("Negative radius");
+        }
+    }
+
+    private ExtDecimalBall(BigDecimal midpoint, BigDecimal radius, int precision) {
+        if (precision <= 0) {
+            throw new IllegalArgumentException("Precision " + precision);
+        }
+        this.midpoint = midpoint;
+        this.radius = radius.signum() == 0 ? BigDecimal.ZERO : radius.round(RADIUS);
+        this.precision = precision;
+    }
+
+    /**
+     * Returns a ball containing the constant, its midpoint has
+     * {@code precision} significant digits.
+     *
+     * @param constant
+     * @param precision number of significant digits of the midpoints
+     * @return {@code constant +- 1 unit of the last digit}
+     */
+    public static ExtDecimalBall valueOf(Constant constant, int precision) {
+        // the scale for precision significant digits
+        BigDecimal estimate = constant.toBigDecimal(precision);
+        int scale = precision - (estimate.precision() - estimate.scale());
+        return new ExtDecimalBall(constant.toBigDecimal(scale), BigDecimal.ONE.scaleByPowerOfTen(-scale), precision);
+    }
+
+    /**
+     * Evaluates {@code f} for rising precisions until the ball can be rounded
+     * to {@code scale} decimal places with {@code rm}, see
+     * {@link #round(int, RoundingMode)}. The function gets the working
+     * precision in significant digits and builds the ball with it, for
+     * example {@code p -> new ExtDecimalBall(x, p).exp().multiply(...)}.
+     *
+     * @param f function which evaluates the expression
+     * @param scale
+     * @param rm
+     * @return the correctly rounded value of the expression
+     * @throws ArithmeticException if the rounding cannot be decided, which
+     * happens if the value lies exactly on a rounding boundary
+     */
+    public static ExtDecimal evaluate(IntFunction<ExtDecimalBall> f, int scale, RoundingMode rm) {
+        int magnitude = 0;
+        int limit = Math.max(1000, 8 * scale);
+        for (int guard = 10; guard <= limit; guard *= 2) {
+            ExtDecimalBall ball = f.apply(Math.max(scale + magnitude + guard, guard));
+            ExtDecimal result = ball.roundOrNull(scale, rm);
+            if (result != null) {
+                return result;
+            }
+            magnitude = ball.midpoint.signum() == 0 ? 0 : ball.midpoint.precision() - ball.midpoint.scale();
+        }
+        throw new ArithmeticException("Rounding cannot be decided, the value may lie on a rounding boundary");
+    }
+
+    /**
+     * Returns the midpoint of the ball.
+     *
+     * @return midpoint
+     */
+    public ExtDecimal midpoint() {
+        return new ExtDecimal(midpoint);
+    }
+
+    /**
+     * Returns the radius of the ball.
+     *
+     * @return radius {@code >= 0}
+     */
+    public ExtDecimal radius() {
+        return new ExtDecimal(radius);
+    }
+
+    /**
+     * Returns the number of significant digits of the midpoints.
+     *
+     * @return precision
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Returns the lower bound of the ball.
+     *
+     * @return {@code midpoint - radius}
+     */
+    public ExtDecimal lower() {
+        return new ExtDecimal(midpoint.subtract(radius));
+    }
+
+    /**
+     * Returns the upper bound of the ball.
+     *
+     * @return {@code midpoint + radius}
+     */
+    public ExtDecimal upper() {
+        return new ExtDecimal(midpoint.add(radius));
+    }
+
+    /**
+     * Returns true if {@code val} lies in the ball.
+     *
+     * @param val
+     * @return {@code |val - midpoint| <= radius}
+     */
+    public boolean contains(ExtDecimal val) {
+        BigDecimal x = val.toBigDecimal();
+        if (x == null) {
+            return val.isZero() && contains(ExtDecimal.ZERO);
+        }
+        return x.subtract(midpoint).abs().compareTo(radius) <= 0;
+    }
+
+    /**
+     * Returns the correct rounding of every number in the ball.
+     *
+     * @param scale
+     * @param rm
+     * @return the rounded value
+     * @throws ArithmeticException if the numbers in the ball round to
+     * different values
+     */
+    public ExtDecimal round(int scale, RoundingMode rm) {
+        ExtDecimal result = roundOrNull(scale, rm);
+        if (result == null) {
+            throw new ArithmeticException("Ball too wide for scale " + scale);
+        }
+        return result;
+    }
+
+    private ExtDecimal roundOrNull(int scale, RoundingMode rm) {
+        // The rounding is monotone, so both bounds decide it
+        BigDecimal lower = midpoint.subtract(radius).setScale(scale, rm);
+        BigDecimal upper = midpoint.add(radius).setScale(scale, rm);
+        return lower.compareTo(upper) == 0 ? new ExtDecimal(lower) : null;
+    }
+
+    /**
+     * Returns the ball {@code -this}.
+     *
+     * @return {@code -this}
+     */
+    public ExtDecimalBall negate() {
+        return new ExtDecimalBall(midpoint.negate(), radius, precision);
+    }
+
+    /**
+     * Returns a ball containing {@code x + y} for all x in {@code this} and y
+     * in {@code augend}.
+     *
+     * @param augend
+     * @return {@code this + augend}
+     */
+    public ExtDecimalBall add(ExtDecimalBall augend) {
+        int p = Math.max(precision, augend.precision);
+        return rounded(midpoint.add(augend.midpoint), radius.add(augend.radius), p);
+    }
+
+    /**
+     * Returns a ball containing {@code x - y} for all x in {@code this} and y
+     * in {@code subtrahend}.
+     *
+     * @param subtrahend
+     * @return {@code this - subtrahend}
+     */
+    public ExtDecimalBall subtract(ExtDecimalBall subtrahend) {
+        int p = Math.max(precision, subtrahend.precision);
+        return rounded(midpoint.subtract(subtrahend.midpoint), radius.add(subtrahend.radius), p);
+    }
+
+    /**
+     * Returns a ball containing {@code x * y} for all x in {@code this} and y
+     * in {@code multiplicand}.
+     *
+     * @param multiplicand
+     * @return {@code this * multiplicand}
+     */
+    public ExtDecimalBall multiply(ExtDecimalBall multiplicand) {
+        int p = Math.max(precision, multiplicand.precision);
+        // |xy - ab| <= |a| s + |b| r + r s
+        BigDecimal r = midpoint.abs().multiply(multiplicand.radius)
+                .add(multiplicand.midpoint.abs().multiply(radius))
+                .add(radius.multiply(multiplicand.radius));
+        return rounded(midpoint.multiply(multiplicand.midpoint), r, p);
+    }
+
+    /**
+     * Returns a ball containing {@code x / y} for all x in {@code this} and y
+     * in {@code divisor}.
+     *
+     * @param divisor
+     * @return {@code this / divisor}
+     * @throws ArithmeticException if {@code divisor} contains 0
+     */
+    public ExtDecimalBall divide(ExtDecimalBall divisor) {
+        int p = Math.max(precision, divisor.precision);
+        BigDecimal b = divisor.midpoint.abs();
+        BigDecimal lower = b.subtract(divisor.radius);
+        if (lower.signum() <= 0) {
+            throw new ArithmeticException("Division by a ball containing 0");
+        }
+        BigDecimal q = midpoint.divide(divisor.midpoint, new MathContext(p, RoundingMode.HALF_EVEN));
+        // |x/y - a/b| <= (|b| r + |a| s) / (|b| (|b| - s))
+        BigDecimal numerator = b.multiply(radius).add(midpoint.abs().multiply(divisor.radius));
+        BigDecimal r = numerator.divide(b.multiply(lower), RADIUS);
+        if (q.multiply(divisor.midpoint).compareTo(midpoint) != 0) {
+            // The rounding error is below one unit of the p-th significant digit
+            r = r.add(BigDecimal.ONE.movePointLeft(p - 1 - (q.precision() - q.scale() - 1)));
+        }
+        return new ExtDecimalBall(q, r, p);
+    }
+
+    /**
+     * Returns a ball containing {@code sqrt(x)} for all {@code x >= 0} in
+     * {@code this}. The negative part of the ball is ignored.
+     *
+     * @return {@code sqrt(this)}
+     * @throws ArithmeticException if all numbers in the ball are negative
+     */
+    public ExtDecimalBall sqrt() {
+        MathContext mc = new MathContext(precision, RoundingMode.HALF_EVEN);
+        BigDecimal lower = midpoint.subtract(radius);
+        BigDecimal upper = midpoint.add(radius);
+        if (upper.signum() < 0) {
+            throw new ArithmeticException("Square root of a negative ball");
+        }
+        if (lower.signum() > 0) {
+            // The root has an error below one ulp, sqrt(m) - ulp is a lower bound
+            BigDecimal s = ExtDecimal.sqrt(midpoint, mc);
+            BigDecimal denominator = s.subtract(s.ulp());
+            if (denominator.signum() > 0) {
+                // |sqrt(x) - sqrt(m)| = |x - m| / (sqrt(x) + sqrt(m)) <= r / sqrt(m)
+                return new ExtDecimalBall(s, radius.divide(denominator, RADIUS).add(s.ulp()), precision);
+            }
+        }
+        // [0, sqrt(upper)]
+        BigDecimal s = ExtDecimal.sqrt(upper, mc);
+        BigDecimal r = s.add(s.ulp()).divide(BigDecimal.valueOf(2));
+        return new ExtDecimalBall(r, r, precision);
+    }
+
+    /**
+     * Returns a ball containing {@code exp(x)} for all x in {@code this}.
+     *
+     * @return {@code exp(this)}
+     * @throws ArithmeticException if the result is too large
+     */
+    public ExtDecimalBall exp() {
+        // exp(m) has about m / ln(10) digits before the decimal point
+        double digits = Math.max(-1e9, Math.min(1e9, Math.floor(midpoint.doubleValue() / LN10)));
+        int scale = (int) Math.max(0, precision - digits);
+        BigDecimal e = new ExtDecimal(midpoint).exp(scale, RoundingMode.HALF_EVEN).toBigDecimal();
+        BigDecimal r;
+        if (radius.compareTo(BigDecimal.ONE) <= 0) {
+            // exp(m + r) - exp(m) = exp(m) (exp(r) - 1) <= exp(m) (e - 1) r for r <= 1
+            r = e.add(e.ulp()).multiply(radius).multiply(BigDecimal.valueOf(2));
+        } else {
+            r = new ExtDecimal(midpoint.add(radius)).exp(scale, RoundingMode.CEILING).toBigDecimal();
+        }
+        return new ExtDecimalBall(e, r.add(e.ulp()), precision);
+    }
+
+    /**
+     * Returns a ball containing {@code ln(x)} for all x in {@code this}.
+     *
+     * @return {@code ln(this)}
+     * @throws ArithmeticException if the ball contains numbers {@code <= 0}
+     */
+    public ExtDecimalBall ln() {
+        BigDecimal lower = midpoint.subtract(radius);
+        if (lower.signum() <= 0) {
+            throw new ArithmeticException("Logarithm of a ball containing numbers <= 0");
+        }
+        double estimate = Math.log(midpoint.doubleValue());
+        if (Double.isInfinite(estimate)) {
+            estimate = LN10 * (midpoint.precision() - midpoint.scale());
+        }
+        int scale = estimate == 0 ? precision : precision - (int) Math.floor(Math.log10(Math.abs(estimate)));
+        BigDecimal l = new ExtDecimal(midpoint).ln(Math.max(0, scale), RoundingMode.HALF_EVEN).toBigDecimal();
+        // |ln(x) - ln(m)| <= r / (m - r)
+        BigDecimal r = radius.divide(lower, RADIUS).add(l.ulp());
+        return new ExtDecimalBall(l, r, precision);
+    }
+
+    /**
+     * Rounds the exact midpoint to {@code p} digits and adds the rounding
+     * error to the radius.
+     */
+    private static ExtDecimalBall rounded(BigDecimal exact, BigDecimal radius, int p) {
+        BigDecimal m = exact.round(new MathContext(p, RoundingMode.HALF_EVEN));
+        return new ExtDecimalBall(m, radius.add(exact.subtract(m).abs()), p);
+    }
+
+    private static BigDecimal finite(ExtDecimal val) {
+        BigDecimal x = val.toBigDecimal();
+        if (x == null) {
+            if (!val.isZero()) {
+                throw new ArithmeticException("Ball of an infinite value");
+            }
+            return BigDecimal.ZERO;
+        }
+        return x;
+    }
+
+    @Override
+    public String toString() {
+        return midpoint + " +- " + radius.toString();
+    }
+}
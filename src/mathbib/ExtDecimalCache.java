@@ -0,0 +1,329 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache for the results of {@link ExtDecimal#sqrt(int)},
+ * {@link ExtDecimal#ln(int, RoundingMode)} and
+ * {@link ExtDecimal#exp(int, RoundingMode)}. The cache is used only by
+ * calling its methods instead of the methods of {@code ExtDecimal}, the
+ * results are the same.
+ *
+ * Every argument keeps one value with the highest scale computed so far, so
+ * requests for lower scales and any rounding mode are served by rounding
+ * this value. The square root is kept truncated, and a truncation of it is
+ * the truncated root for the lower scale. The logarithm and the exponential
+ * function are kept rounded with {@link RoundingMode#FLOOR} to at least one
+ * digit more than requested: the result of an argument other than 1 or 0 is
+ * irrational, so it lies strictly between the kept value and the next unit,
+ * and no rounding boundary of a lower scale lies in between. A request for
+ * more digits than cached at least doubles the scale, like the cache of
+ * {@link Constant}.
+ *
+ * The weight of an entry is the number of digits of the argument and of the
+ * value. If the total weight exceeds the maximum, entries which were not
+ * used since the last pass are evicted in the order of their insertion
+ * (second chance). The cache can be used from several threads without
+ * locks, two threads may compute the same value at the same time.
+ */
+public final class ExtDecimalCache {
+
+    /**
+     * Number of digits computed beyond the requested scale.
+     */
+    private static final int GUARD = 10;
+    private final long maximumWeight;
+    private final ConcurrentHashMap<Key, Node> map = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Node> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs an empty cache which keeps at most {@code maximumWeight}
+     * digits of arguments and values.
+     *
+     * @param maximumWeight
+     */
+    public ExtDecimalCache(long maximumWeight) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Maximum weight must be positive: " + maximumWeight);
+        }
+        this.maximumWeight = maximumWeight;
+    }
+
+    /**
+     * Returns {@code x.sqrt(scale)}, see {@link ExtDecimal#sqrt(int)}.
+     *
+     * @param x
+     * @param scale
+     * @return {@code sqrt(x)}
+     */
+    public ExtDecimal sqrt(ExtDecimal x, int scale) {
+        BigDecimal v = x.toBigDecimal();
+        if (v == null || v.signum() <= 0) {
+            return x.sqrt(scale);
+        }
+        return get(Operation.SQRT, x, v, scale, RoundingMode.DOWN);
+    }
+
+    /**
+     * Returns {@code x.ln(scale, rm)}, see
+     * {@link ExtDecimal#ln(int, RoundingMode)}.
+     *
+     * @param x
+     * @param scale
+     * @param rm
+     * @return {@code ln(x)}
+     */
+    public ExtDecimal ln(ExtDecimal x, int scale, RoundingMode rm) {
+        BigDecimal v = x.toBigDecimal();
+        if (v == null || v.signum() <= 0 || v.compareTo(BigDecimal.ONE) == 0 || rm == RoundingMode.UNNECESSARY) {
+            return x.ln(scale, rm);
+        }
+        return get(Operation.LN, x, v, scale, rm);
+    }
+
+    /**
+     * Returns {@code x.exp(scale, rm)}, see
+     * {@link ExtDecimal#exp(int, RoundingMode)}.
+     *
+     * @param x
+     * @param scale
+     * @param rm
+     * @return {@code exp(x)}
+     */
+    public ExtDecimal exp(ExtDecimal x, int scale, RoundingMode rm) {
+        BigDecimal v = x.toBigDecimal();
+        if (v == null || v.signum() == 0 || rm == RoundingMode.UNNECESSARY) {
+            return x.exp(scale, rm);
+        }
+        return get(Operation.EXP, x, v, scale, rm);
+    }
+
+    private ExtDecimal get(Operation op, ExtDecimal x, BigDecimal v, int scale, RoundingMode rm) {
+        Key key = new Key(op, v.stripTrailingZeros());
+        int needed = op.neededScale(scale);
+        Node old = map.get(key);
+        if (old != null && old.value.scale() >= needed) {
+            old.referenced = true;
+            hits.increment();
+            return new ExtDecimal(op.round(old.value, scale, rm));
+        }
+        misses.increment();
+        int s = Math.max(needed + GUARD, old == null ? 0 : 2 * old.value.scale());
+        Node node = new Node(key, op.compute(x, s));
+        // Another thread may have stored a value in the meantime, the higher scale wins
+        while (true) {
+            Node current = map.putIfAbsent(key, node);
+            if (current == null) {
+                weight.addAndGet(node.weight);
+                queue.offer(node);
+                break;
+            } else if (current.value.scale() >= node.value.scale()) {
+                node = current;
+                break;
+            } else if (map.replace(key, current, node)) {
+                // The replaced node stays in the queue and is dropped when it is polled
+                weight.addAndGet(node.weight - current.weight);
+                queue.offer(node);
+                break;
+            }
+        }
+        evict();
+        return new ExtDecimal(op.round(node.value, scale, rm));
+    }
+
+    /**
+     * Removes entries until the weight is at most the maximum. An entry which
+     * was used since it was inserted or passed gets a second chance.
+     */
+    private void evict() {
+        while (weight.get() > maximumWeight) {
+            Node n = queue.poll();
+            if (n == null) {
+                return;
+            }
+            if (map.get(n.key) != n) {
+                // replaced or removed
+                continue;
+            }
+            if (n.referenced) {
+                n.referenced = false;
+                queue.offer(n);
+            } else if (map.remove(n.key, n)) {
+                weight.addAndGet(-n.weight);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries, the counts of hits, misses and evictions are kept.
+     */
+    public void clear() {
+        for (Node n; (n = queue.poll()) != null;) {
+            if (map.remove(n.key, n)) {
+                weight.addAndGet(-n.weight);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests served from the cache.
+     *
+     * @return number of hits
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests which were computed.
+     *
+     * @return number of misses
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries removed because of the maximum weight.
+     *
+     * @return number of evictions
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the total number of digits of the cached arguments and values.
+     *
+     * @return weight
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ExtDecimalCache[size=" + size() + ", weight=" + weight() + "/" + maximumWeight
+                + ", hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions() + "]";
+    }
+
+    private enum Operation {
+
+        /**
+         * Truncated root, a truncation of it is the truncated root.
+         */
+        SQRT {
+            @Override
+            BigDecimal compute(ExtDecimal x, int scale) {
+                return x.sqrt(scale).toBigDecimal();
+            }
+
+            @Override
+            int neededScale(int scale) {
+                return scale;
+            }
+
+            @Override
+            BigDecimal round(BigDecimal value, int scale, RoundingMode rm) {
+                return value.setScale(scale, RoundingMode.DOWN);
+            }
+        },
+        LN {
+            @Override
+            BigDecimal compute(ExtDecimal x, int scale) {
+                return x.ln(scale, RoundingMode.FLOOR).toBigDecimal();
+            }
+        },
+        EXP {
+            @Override
+            BigDecimal compute(ExtDecimal x, int scale) {
+                return x.exp(scale, RoundingMode.FLOOR).toBigDecimal();
+            }
+        };
+
+        /**
+         * Returns the value with the scale {@code scale}.
+         */
+        abstract BigDecimal compute(ExtDecimal x, int scale);
+
+        /**
+         * Returns the lowest cached scale which serves {@code scale}.
+         */
+        int neededScale(int scale) {
+            return scale + 1;
+        }
+
+        /**
+         * Rounds a cached value to {@code scale}. The exact value lies strictly
+         * between {@code value} and the next unit, and a rounding boundary of
+         * {@code scale} is a multiple of the unit, so the exact value rounds
+         * like the midpoint.
+         */
+        BigDecimal round(BigDecimal value, int scale, RoundingMode rm) {
+            BigDecimal half = BigDecimal.valueOf(5, value.scale() + 1);
+            return value.add(half).setScale(scale, rm);
+        }
+    }
+
+    private static final class Key {
+
+        private final Operation op;
+        private final BigDecimal argument;
+
+        Key(Operation op, BigDecimal argument) {
+            this.op = op;
+            this.argument = argument;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return op == k.op && argument.equals(k.argument);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * op.hashCode() + argument.hashCode();
+        }
+    }
+
+    private static final class Node {
+
+        private final Key key;
+        private final BigDecimal value;
+        private final long weight;
+        private volatile boolean referenced;
+
+        Node(Key key, BigDecimal value) {
+            this.key = key;
+            this.value = value;
+            this.weight = key.argument.precision() + value.precision();
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collector;
+
+/**
+ * Collectors for sums, products, means and variances of
+ * {@code Stream<ExtDecimal>}. The collectors keep exact intermediate results:
+ * sums in an {@link ExtDecimalAccumulator}, products in a balanced product
+ * tree and the sum of the reciprocals for the harmonic mean as an exact
+ * fraction. Only the finisher rounds, once and correctly. So the result does
+ * not depend on the order of the elements or on the splitting of a parallel
+ * stream, it is the same on any number of cores.
+ *
+ * The means and variances accept only numbers, special values throw an
+ * ArithmeticException.
+ */
+public final class ExtDecimalCollectors {
+
+    private ExtDecimalCollectors() {
+    }
+
+    /**
+     * Returns a collector for the exact sum, with the largest scale of the
+     * elements like {@link ExtDecimal#add(ExtDecimal)}. The sum of no element
+     * is 0.
+     *
+     * @return the collector of the sum
+     */
+    public static Collector<ExtDecimal, ?, ExtDecimal> sum() {
+        return Collector.of(ExtDecimalAccumulator::new, ExtDecimalAccumulator::add,
+                (a, b) -> a.add(b.toExtDecimal()), ExtDecimalAccumulator::toExtDecimal,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector for the exact product, with the sum of the scales
+     * of the elements like {@link ExtDecimal#multiply(ExtDecimal)}. The
+     * factors are multiplied in a balanced tree, so the large multiplications
+     * are done on numbers of similar size. The product of no element is 1.
+     *
+     * @return the collector of the product
+     */
+    public static Collector<ExtDecimal, ?, ExtDecimal> product() {
+        return Collector.of(() -> new Tree<BigDecimal>(BigDecimal::multiply),
+                (t, x) -> t.add(number(x)), Tree::addAll,
+                t -> t.isEmpty() ? ExtDecimal.ONE : new ExtDecimal(t.result()),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector for the arithmetic mean (x_1 + ... + x_n) / n with
+     * the scale {@code scale}, rounded with {@code rm}.
+     *
+     * @param scale
+     * @param rm
+     * @return the collector of the arithmetic mean
+     */
+    public static Collector<ExtDecimal, ?, ExtDecimal> arithmeticMean(final int scale, final RoundingMode rm) {
+        return Collector.of(Moments::new, Moments::add, Moments::addAll, m -> {
+            BigDecimal sum = m.sum.toExtDecimal().toBigDecimal();
+            return new ExtDecimal(sum.divide(BigDecimal.valueOf(m.count()), scale, rm));
+        }, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector for the geometric mean (x_1 ... x_n)^(1/n) of
+     * numbers {@code >= 0} with the scale {@code scale}, rounded with
+     * {@code rm}. The root of the exact product is computed as
+     * exp(ln(product) / n), the working precision is raised until the error
+     * bound allows the correct rounding.
+     *
+     * @param scale
+     * @param rm
+     * @return the collector of the geometric mean
+     */
+    public static Collector<ExtDecimal, ?, ExtDecimal> geometricMean(final int scale, final RoundingMode rm) {
+        return Collector.of(() -> new Tree<BigDecimal>(BigDecimal::multiply), (t, x) -> {
+            BigDecimal v = number(x);
+            if (v.signum() < 0) {
+                throw new ArithmeticException("Geometric mean of negative numbers");
+            }
+            t.add(v);
+        }, Tree::addAll, t -> root(t.result(), t.count(), scale, rm),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector for the harmonic mean n / (1/x_1 + ... + 1/x_n) of
+     * positive numbers with the scale {@code scale}, rounded with
+     * {@code rm}. The reciprocals are added as exact fractions in a balanced
+     * tree.
+     *
+     * @param scale
+     * @param rm
+     * @return the collector of the harmonic mean
+     */
+    public static Collector<ExtDecimal, ?, ExtDecimal> harmonicMean(final int scale, final RoundingMode rm) {
+        return Collector.of(() -> new Tree<BigInteger[]>(ExtDecimalCollectors::addFractions), (t, x) -> {
+            BigDecimal v = number(x);
+            if (v.signum() <= 0) {
+                throw new ArithmeticException("Harmonic Mean of negative numbers or zero");
+            }
+            // 1 / (u 10^-s) = 10^s / u
+            BigInteger u = v.unscaledValue();
+            t.add(v.scale() >= 0 ? new BigInteger[]{ExtDecimal.powerOfTen(v.scale()), u}
+                    : new BigInteger[]{BigInteger.ONE, u.multiply(ExtDecimal.powerOfTen(-v.scale()))});
+        }, Tree::addAll, t -> {
+            BigInteger[] f = t.result();
+            BigDecimal numerator = new BigDecimal(f[1].multiply(BigInteger.valueOf(t.count())));
+            return new ExtDecimal(numerator.divide(new BigDecimal(f[0]), scale, rm));
+        }, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector for the quadratic mean sqrt((x_1^2 + ... + x_n^2) /
+     * n) with the scale {@code scale}, rounded with {@code rm}.
+     *
+     * @param scale
+     * @param rm
+     * @return the collector of the quadratic mean
+     */
+    public static Collector<ExtDecimal, ?, ExtDecimal> quadraticMean(final int scale, final RoundingMode rm) {
+        return Collector.of(Moments::new, Moments::add, Moments::addAll, m -> {
+            BigDecimal squares = m.squares.toExtDecimal().toBigDecimal();
+            return new ExtDecimal(sqrt(squares, BigInteger.valueOf(m.count()), scale, rm));
+        }, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector for the population variance (x_1^2 + ... + x_n^2) /
+     * n - ((x_1 + ... + x_n) / n)^2 with the scale {@code scale}, rounded
+     * with {@code rm}.
+     *
+     * @param scale
+     * @param rm
+     * @return the collector of the variance
+     */
+    public static Collector<ExtDecimal, ?, ExtDecimal> variance(final int scale, final RoundingMode rm) {
+        return Collector.of(Moments::new, Moments::add, Moments::addAll, m -> m.variance(0, scale, rm),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector for the sample variance, the sum of the squared
+     * deviations from the mean divided by n - 1, with the scale
+     * {@code scale}, rounded with {@code rm}.
+     *
+     * @param scale
+     * @param rm
+     * @return the collector of the sample variance
+     * @throws ArithmeticException in the finisher for less than two elements
+     */
+    public static Collector<ExtDecimal, ?, ExtDecimal> sampleVariance(final int scale, final RoundingMode rm) {
+        return Collector.of(Moments::new, Moments::add, Moments::addAll, m -> m.variance(1, scale, rm),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns the value of a number, throws an ArithmeticException for the
+     * special values.
+     */
+    private static BigDecimal number(ExtDecimal x) {
+        BigDecimal v = x.toBigDecimal();
+        if (v == null) {
+            throw new ArithmeticException("Special value in a mean or product");
+        }
+        return v;
+    }
+
+    /**
+     * a[0]/a[1] + b[0]/b[1]
+     */
+    private static BigInteger[] addFractions(BigInteger[] a, BigInteger[] b) {
+        return new BigInteger[]{a[0].multiply(b[1]).add(b[0].multiply(a[1])), a[1].multiply(b[1])};
+    }
+
+    /**
+     * Returns sqrt(x / n) with the scale {@code scale}, rounded with
+     * {@code rm}. With x = u 10^-s, 10^scale sqrt(x / n) = sqrt(u 10^(2 scale
+     * - s) / n) = sqrt(a / b), whose floor is isqrt(floor(a / b)). The
+     * rounding compares a / b exactly with r^2 and (r + 1/2)^2.
+     */
+    private static BigDecimal sqrt(BigDecimal x, BigInteger n, int scale, RoundingMode rm) {
+        long e = 2L * scale - x.scale();
+        BigInteger a = x.unscaledValue();
+        BigInteger b = n;
+        if (e >= 0) {
+            a = a.multiply(ExtDecimal.powerOfTen((int) e));
+        } else {
+            b = b.multiply(ExtDecimal.powerOfTen((int) -e));
+        }
+        BigInteger r = ExtDecimal.isqrt(a.divide(b));
+        if (r.multiply(r).multiply(b).compareTo(a) != 0) {
+            BigInteger odd = r.shiftLeft(1).add(BigInteger.ONE);
+            int half = a.shiftLeft(2).compareTo(odd.multiply(odd).multiply(b));
+            if (roundUp(rm, half, r.testBit(0))) {
+                r = r.add(BigInteger.ONE);
+            }
+        }
+        return new BigDecimal(r, scale);
+    }
+
+    /**
+     * Returns true if an inexact positive value with the floor r is rounded
+     * up, {@code half} compares its fraction with 1/2.
+     */
+    private static boolean roundUp(RoundingMode rm, int half, boolean odd) {
+        switch (rm) {
+            case UP:
+            case CEILING:
+                return true;
+            case DOWN:
+            case FLOOR:
+                return false;
+            case HALF_UP:
+                return half >= 0;
+            case HALF_DOWN:
+                return half > 0;
+            case HALF_EVEN:
+                return half > 0 || (half == 0 && odd);
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+    }
+
+    /**
+     * Returns p^(1/n) for p >= 0 with the scale {@code scale}, rounded with
+     * {@code rm}, like {@link ExtDecimal#pow(ExtDecimal, int, RoundingMode)}.
+     */
+    private static ExtDecimal root(BigDecimal p, long n, int scale, RoundingMode rm) {
+        if (p.signum() == 0) {
+            return new ExtDecimal(BigDecimal.ZERO.setScale(scale));
+        }
+        BigDecimal exact = n <= Integer.MAX_VALUE ? ExtDecimal.exactRoot(p, (int) n) : null;
+        if (exact != null) {
+            return new ExtDecimal(exact.setScale(scale, rm));
+        }
+        // digits before the decimal point of the root
+        double digits = (double) (p.precision() - p.scale()) / n;
+        if (digits < -(scale + 3)) {
+            // the root is below 10^-(scale + 2), only the rounding mode decides
+            return new ExtDecimal(new BigDecimal(BigInteger.ONE, scale + 2).setScale(scale, rm));
+        }
+        int d = (int) Math.ceil(Math.max(digits, 0));
+        for (int guard = 10;; guard *= 2) {
+            int w = scale + guard;
+            int lnScale = w + d + 2;
+            // ln(p) = ln(m) + e ln(10) with 1 <= m < 10, p rounded to the working
+            // precision, so a long product is not scaled by a power of 2
+            BigDecimal rounded = p.round(new MathContext(lnScale + 6, RoundingMode.HALF_EVEN));
+            int e = rounded.precision() - rounded.scale() - 1;
+            BigDecimal ln = ExtDecimal.ln(rounded.movePointLeft(e), lnScale + 4)
+                    .add(Constant.LN10.toBigDecimal(lnScale + 5 + Integer.toString(Math.abs(e)).length()).multiply(BigDecimal.valueOf(e)));
+            // |z - ln(p) / n| < 10^-lnScale + 10^-(lnScale + 3)
+            BigDecimal z = ln.divide(BigDecimal.valueOf(n), lnScale + 3, RoundingMode.HALF_EVEN);
+            BigDecimal value = new ExtDecimal(z).exp(w, RoundingMode.HALF_EVEN).toBigDecimal();
+            // |exp(z + t) - exp(z)| <= 2 |t| exp(z) for |t| <= 1/2, and the rounding of exp
+            BigDecimal ulp = BigDecimal.ONE.movePointLeft(w);
+            BigDecimal error = value.add(ulp).movePointLeft(lnScale - 1).add(ulp);
+            BigDecimal low = value.subtract(error).setScale(scale, rm);
+            if (low.compareTo(value.add(error).setScale(scale, rm)) == 0) {
+                return new ExtDecimal(low);
+            }
+        }
+    }
+
+    /**
+     * The exact sums of the numbers and of their squares.
+     */
+    private static final class Moments {
+
+        private final ExtDecimalAccumulator sum = new ExtDecimalAccumulator();
+        private final ExtDecimalAccumulator squares = new ExtDecimalAccumulator();
+        private long count;
+
+        void add(ExtDecimal x) {
+            number(x);
+            sum.add(x);
+            squares.multiplyAdd(x, x);
+            count++;
+        }
+
+        Moments addAll(Moments m) {
+            sum.add(m.sum.toExtDecimal());
+            squares.add(m.squares.toExtDecimal());
+            count += m.count;
+            return this;
+        }
+
+        long count() {
+            if (count == 0) {
+                throw new ArithmeticException("Mean of no element");
+            }
+            return count;
+        }
+
+        /**
+         * Returns (n sum x^2 - (sum x)^2) / (n (n - correction)).
+         */
+        ExtDecimal variance(int correction, int scale, RoundingMode rm) {
+            BigDecimal n = BigDecimal.valueOf(count());
+            if (count <= correction) {
+                throw new ArithmeticException("Sample variance of " + count + " element");
+            }
+            BigDecimal s = sum.toExtDecimal().toBigDecimal();
+            BigDecimal numerator = n.multiply(squares.toExtDecimal().toBigDecimal()).subtract(s.multiply(s));
+            return new ExtDecimal(numerator.divide(n.multiply(BigDecimal.valueOf(count - correction)), scale, rm));
+        }
+    }
+
+    /**
+     * A balanced reduction of an associative and commutative operation. The
+     * partial results are kept with the number of their elements, and two
+     * neighbours are combined as soon as the newer one covers as many
+     * elements as the older one, like the carries of a binary counter.
+     */
+    private static final class Tree<T> {
+
+        private final BinaryOperator<T> op;
+        private final ArrayList<T> values = new ArrayList<>();
+        private final ArrayList<Long> counts = new ArrayList<>();
+
+        Tree(BinaryOperator<T> op) {
+            this.op = op;
+        }
+
+        void add(T value) {
+            add(value, 1);
+        }
+
+        private void add(T value, long count) {
+            int top = values.size() - 1;
+            while (top >= 0 && counts.get(top) <= count) {
+                value = op.apply(values.remove(top), value);
+                count += counts.remove(top);
+                top--;
+            }
+            values.add(value);
+            counts.add(count);
+        }
+
+        Tree<T> addAll(Tree<T> t) {
+            for (int i = 0; i < t.values.size(); i++) {
+                add(t.values.get(i), t.counts.get(i));
+            }
+            return this;
+        }
+
+        boolean isEmpty() {
+            return values.isEmpty();
+        }
+
+        long count() {
+            long n = 0;
+            for (long c : counts) {
+                n += c;
+            }
+            if (n == 0) {
+                throw new ArithmeticException("Mean of no element");
+            }
+            return n;
+        }
+
+        /**
+         * Combines the partial results, the smallest first.
+         */
+        T result() {
+            if (values.isEmpty()) {
+                throw new ArithmeticException("Mean of no element");
+            }
+            T value = values.get(values.size() - 1);
+            for (int i = values.size() - 2; i >= 0; i--) {
+                value = op.apply(values.get(i), value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * A real number which is evaluated on demand to any scale (constructive
+ * real). The operations do not compute anything, they build an expression
+ * graph whose nodes deliver approximations with an error below one unit of
+ * the requested last place. Every node derives the scales it needs from its
+ * operands, so the caller asks only for the digits of the result.
+ *
+ * Every node keeps its best approximation. A request for at most as many
+ * digits is served from it by rounding, and a subexpression which is used
+ * several times is evaluated only once for a scale. The numbers can be used
+ * from several threads.
+ *
+ * Comparisons with 0 are not decidable in general. Division and logarithm
+ * treat a value below 10^-{@link #ZEROSCALE} in absolute value as 0.
+ */
+public abstract class LazyDecimal {
+
+    /**
+     * Largest scale used to separate a divisor or the argument of
+     * {@link #ln()} from 0.
+     */
+    public static final int ZEROSCALE = 10000;
+    private static final double LN10 = Math.log(10);
+    public static final LazyDecimal ZERO = new Exact(BigDecimal.ZERO);
+    public static final LazyDecimal ONE = new Exact(BigDecimal.ONE);
+    private volatile BigDecimal cached;
+
+    /**
+     * Returns an approximation with the scale {@code scale} and an error below
+     * 10^-scale, {@code scale >= 0}.
+     *
+     * @param scale
+     * @return the approximation
+     */
+    abstract BigDecimal compute(int scale);
+
+    /**
+     * Returns the number {@code val}.
+     *
+     * @param val
+     * @return {@code val} as {@code LazyDecimal}
+     * @throws ArithmeticException if {@code val} is infinite
+     */
+    public static LazyDecimal valueOf(ExtDecimal val) {
+        BigDecimal x = val.toBigDecimal();
+        if (x == null) {
+            if (!val.isZero()) {
+                throw new ArithmeticException("Infinite value");
+            }
+            return ZERO;
+        }
+        return new Exact(x);
+    }
+
+    /**
+     * Returns the number {@code val}.
+     *
+     * @param val
+     * @return {@code val} as {@code LazyDecimal}
+     */
+    public static LazyDecimal valueOf(long val) {
+        return new Exact(BigDecimal.valueOf(val));
+    }
+
+    /**
+     * Returns the constant, its digits come from the cache of
+     * {@code constant}.
+     *
+     * @param constant
+     * @return {@code constant} as {@code LazyDecimal}
+     */
+    public static LazyDecimal valueOf(final Constant constant) {
+        return new LazyDecimal() {
+            @Override
+            BigDecimal compute(int scale) {
+                return constant.toBigDecimal(scale);
+            }
+        };
+    }
+
+    /**
+     * Returns an approximation of the number with an error below
+     * 10^-{@code scale}. The result is not rounded correctly, see
+     * {@link #value(int, RoundingMode)}.
+     *
+     * @param scale
+     * @return the approximation with the scale {@code scale}
+     */
+    public BigDecimal toBigDecimal(int scale) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("Negative scale " + scale);
+        }
+        BigDecimal c = cached;
+        if (c != null && c.scale() >= scale) {
+            // The rounding adds at most half a unit to an error below 1/10
+            return c.scale() == scale ? c : c.setScale(scale, RoundingMode.HALF_EVEN);
+        }
+        BigDecimal v = compute(scale);
+        c = cached;
+        if (c == null || c.scale() < scale) {
+            cached = v;
+        }
+        return v;
+    }
+
+    /**
+     * Returns an approximation of the number with an error below
+     * 10^-{@code scale}, see {@link #toBigDecimal(int)}.
+     *
+     * @param scale
+     * @return the approximation
+     */
+    public ExtDecimal value(int scale) {
+        return new ExtDecimal(toBigDecimal(scale));
+    }
+
+    /**
+     * Returns the number with the scale {@code scale}, rounded with
+     * {@code rm}. The number is approximated with more digits until the
+     * rounding is certain. Sums, products, negations and square roots of
+     * exact numbers are exact and rounded directly.
+     *
+     * @param scale
+     * @param rm
+     * @return the correctly rounded number
+     * @throws ArithmeticException if the rounding cannot be decided, which
+     * happens if a number which is not exact lies on a rounding boundary
+     */
+    public ExtDecimal value(int scale, RoundingMode rm) {
+        int limit = Math.max(1000, 8 * scale);
+        for (int guard = 3; guard <= limit; guard *= 2) {
+            BigDecimal a = toBigDecimal(scale + guard);
+            BigDecimal ulp = a.ulp();
+            BigDecimal lower = a.subtract(ulp).setScale(scale, rm);
+            if (lower.compareTo(a.add(ulp).setScale(scale, rm)) == 0) {
+                return new ExtDecimal(lower);
+            }
+        }
+        throw new ArithmeticException("Rounding cannot be decided, the value may lie on a rounding boundary");
+    }
+
+    /**
+     * Returns the highest scale computed so far, -1 if the number was not
+     * evaluated yet.
+     *
+     * @return cached scale
+     */
+    public int cachedScale() {
+        BigDecimal c = cached;
+        return c == null ? -1 : c.scale();
+    }
+
+    /**
+     * Returns {@code this + augend}.
+     *
+     * @param augend
+     * @return {@code this + augend}
+     */
+    public LazyDecimal add(LazyDecimal augend) {
+        if (this instanceof Exact && augend instanceof Exact) {
+            return new Exact(((Exact) this).value.add(((Exact) augend).value));
+        }
+        return new Sum(this, augend);
+    }
+
+    /**
+     * Returns {@code this - subtrahend}.
+     *
+     * @param subtrahend
+     * @return {@code this - subtrahend}
+     */
+    public LazyDecimal subtract(LazyDecimal subtrahend) {
+        return add(subtrahend.negate());
+    }
+
+    /**
+     * Returns {@code -this}.
+     *
+     * @return {@code -this}
+     */
+    public LazyDecimal negate() {
+        if (this instanceof Exact) {
+            return new Exact(((Exact) this).value.negate());
+        }
+        final LazyDecimal x = this;
+        return new LazyDecimal() {
+            @Override
+            BigDecimal compute(int scale) {
+                return x.toBigDecimal(scale).negate();
+            }
+        };
+    }
+
+    /**
+     * Returns {@code this * multiplicand}.
+     *
+     * @param multiplicand
+     * @return {@code this * multiplicand}
+     */
+    public LazyDecimal multiply(LazyDecimal multiplicand) {
+        if (this instanceof Exact && multiplicand instanceof Exact) {
+            return new Exact(((Exact) this).value.multiply(((Exact) multiplicand).value));
+        }
+        return new Product(this, multiplicand);
+    }
+
+    /**
+     * Returns {@code this / divisor}. The evaluation throws an
+     * ArithmeticException if the divisor is 0, see {@link #ZEROSCALE}.
+     *
+     * @param divisor
+     * @return {@code this / divisor}
+     */
+    public LazyDecimal divide(LazyDecimal divisor) {
+        return new Product(this, divisor.inverse());
+    }
+
+    /**
+     * Returns {@code 1 / this}. The evaluation throws an ArithmeticException
+     * if the number is 0, see {@link #ZEROSCALE}.
+     *
+     * @return {@code 1 / this}
+     */
+    public LazyDecimal inverse() {
+        return new Inverse(this);
+    }
+
+    /**
+     * Returns the square root. The evaluation throws an ArithmeticException
+     * if an approximation shows that the number is negative.
+     *
+     * @return {@code sqrt(this)}
+     */
+    public LazyDecimal sqrt() {
+        if (this instanceof Exact && ((Exact) this).value.signum() >= 0) {
+            BigDecimal root = ExtDecimal.exactRoot(((Exact) this).value, 2);
+            if (root != null) {
+                return new Exact(root);
+            }
+        }
+        final LazyDecimal x = this;
+        return new LazyDecimal() {
+            @Override
+            BigDecimal compute(int scale) {
+                // |sqrt(x) - sqrt(a)| <= sqrt(|x - a|) < 10^-(scale + 1)
+                BigDecimal a = x.toBigDecimal(2 * scale + 2);
+                if (a.signum() < 0) {
+                    // An approximation of 0 is 0, so x < 0
+                    throw new ArithmeticException("Square root of a negative number");
+                }
+                return new ExtDecimal(a).sqrt(scale + 1).toBigDecimal().setScale(scale, RoundingMode.HALF_EVEN);
+            }
+        };
+    }
+
+    /**
+     * Returns the exponential function.
+     *
+     * @return {@code exp(this)}
+     */
+    public LazyDecimal exp() {
+        final LazyDecimal x = this;
+        return new LazyDecimal() {
+            @Override
+            BigDecimal compute(int scale) {
+                // |exp(x) - exp(a)| <= exp(max(x, a)) |x - a| and exp(x) < 10^digits
+                double bound = x.toBigDecimal(0).doubleValue() + 2;
+                if (bound > (Integer.MAX_VALUE >> 2) * Math.log(2)) {
+                    throw new ArithmeticException("exp overflow");
+                }
+                int digits = (int) Math.max(-scale, Math.ceil(bound / LN10));
+                BigDecimal a = x.toBigDecimal(Math.max(0, scale + digits + 2));
+                return new ExtDecimal(a).exp(scale, RoundingMode.HALF_EVEN).toBigDecimal();
+            }
+        };
+    }
+
+    /**
+     * Returns the natural logarithm. The evaluation throws an
+     * ArithmeticException if the number is negative or 0, see
+     * {@link #ZEROSCALE}.
+     *
+     * @return {@code ln(this)}
+     */
+    public LazyDecimal ln() {
+        final LazyDecimal x = this;
+        return new LazyDecimal() {
+            private int m = -1;
+
+            @Override
+            BigDecimal compute(int scale) {
+                if (m < 0) {
+                    m = x.lowerBoundScale();
+                }
+                // x >= 10^-m, so |ln(x) - ln(a)| <= |x - a| / min(x, a) < 10^-(scale + 1)
+                BigDecimal a = x.toBigDecimal(scale + m + 2);
+                if (a.signum() <= 0) {
+                    throw new ArithmeticException("Logarithm of a number <= 0");
+                }
+                return new ExtDecimal(a).ln(scale, RoundingMode.HALF_EVEN).toBigDecimal();
+            }
+        };
+    }
+
+    /**
+     * Returns m with |this| >= 10^-m.
+     */
+    private int lowerBoundScale() {
+        for (int k = 0;; k = Math.min(2 * k + 10, ZEROSCALE)) {
+            BigDecimal a = toBigDecimal(k);
+            // |a| >= 2 units, so |this| > |a| - 1 unit >= 10^-k
+            if (a.unscaledValue().abs().compareTo(BigInteger.ONE) > 0) {
+                return k;
+            } else if (k == ZEROSCALE) {
+                break;
+            }
+        }
+        throw new ArithmeticException("Value indistinguishable from 0");
+    }
+
+    /**
+     * Returns D with |this| + 1 < 10^D.
+     */
+    private int magnitude() {
+        BigDecimal a = toBigDecimal(0).abs().add(BigDecimal.valueOf(2));
+        return a.precision() - a.scale();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal(20).toString();
+    }
+
+    /**
+     * An exact number.
+     */
+    private static final class Exact extends LazyDecimal {
+
+        private final BigDecimal value;
+
+        Exact(BigDecimal value) {
+            this.value = value;
+        }
+
+        @Override
+        BigDecimal compute(int scale) {
+            return value.setScale(scale, RoundingMode.HALF_EVEN);
+        }
+
+        @Override
+        public ExtDecimal value(int scale, RoundingMode rm) {
+            return new ExtDecimal(value.setScale(scale, rm));
+        }
+    }
+
+    private static final class Sum extends LazyDecimal {
+
+        private final LazyDecimal x;
+        private final LazyDecimal y;
+
+        Sum(LazyDecimal x, LazyDecimal y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        BigDecimal compute(int scale) {
+            // Two errors below 1/10 and the rounding
+            return x.toBigDecimal(scale + 1).add(y.toBigDecimal(scale + 1)).setScale(scale, RoundingMode.HALF_EVEN);
+        }
+    }
+
+    private static final class Product extends LazyDecimal {
+
+        private final LazyDecimal x;
+        private final LazyDecimal y;
+
+        Product(LazyDecimal x, LazyDecimal y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        BigDecimal compute(int scale) {
+            // |xy - ab| <= |x| |y - b| + |b| |x - a| with |x|, |b| < 10^D
+            BigDecimal a = x.toBigDecimal(scale + y.magnitude() + 2);
+            BigDecimal b = y.toBigDecimal(scale + x.magnitude() + 2);
+            return a.multiply(b).setScale(scale, RoundingMode.HALF_EVEN);
+        }
+    }
+
+    private static final class Inverse extends LazyDecimal {
+
+        private final LazyDecimal x;
+        private int m = -1;
+
+        Inverse(LazyDecimal x) {
+            this.x = x;
+        }
+
+        @Override
+        BigDecimal compute(int scale) {
+            if (m < 0) {
+                m = x.lowerBoundScale();
+            }
+            // |x| >= 10^-m and |a| > 10^-m / 2, so |1/x - 1/a| = |x - a| / |x a| < 10^-(scale + 1)
+            BigDecimal a = x.toBigDecimal(scale + 2 * m + 2);
+            return BigDecimal.ONE.divide(a, scale, RoundingMode.HALF_EVEN);
+        }
+    }
+}
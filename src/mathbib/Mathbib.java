@@ -55,7 +55,7 @@ public class Mathbib {
 
         ExtDecimal a = ExtDecimal.ONE;
         ExtDecimal b = ExtDecimal.TWO;
-        ExtDecimal c = ExtDecimal.E;
+        ExtDecimal c = ExtDecimal.e();
 
 //        System.out.println(a.ln(10, RoundingMode.UP));
         System.out.println(a.exp(10, RoundingMode.UP));
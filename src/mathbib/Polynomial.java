@@ -4,6 +4,12 @@
  */
 package mathbib;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 /**
  *
  * @author Julian C. Quast (c) 2013
@@ -13,6 +19,34 @@ public class Polynomial extends VectorSpaceElement {
     private ExtDecimal[] coefficients;
     private int degree = -2;
     public static Polynomial ZERO = new Polynomial(0);
+    /**
+     * Below this number of coefficients the schoolbook method is used.
+     */
+    static final int KARATSUBA_THRESHOLD = 24;
+    /**
+     * From this number of coefficients on Toom-3 is used instead of Karatsuba.
+     */
+    static final int TOOM3_THRESHOLD = 160;
+    /**
+     * From this number of coefficients on the number-theoretic transform is
+     * used if the coefficients are small enough for the available primes.
+     */
+    static final int NTT_THRESHOLD = 48;
+    /**
+     * Primes p = c * 2^22 + 1 between 2^30 and 2^31 for the number-theoretic
+     * transform. Products of two residues fit into a long.
+     */
+    private static final long[] NTT_PRIMES = {2130706433L, 2113929217L, 2088763393L, 2025848833L,
+        2013265921L, 1866465281L, 1811939329L, 1790967809L, 1711276033L, 1572864001L, 1484783617L,
+        1438646273L, 1321205761L, 1300234241L, 1224736769L, 1212153857L, 1161822209L, 1107296257L};
+    /**
+     * Primitive roots of the primes in {@code NTT_PRIMES}.
+     */
+    private static final long[] NTT_ROOTS = {3, 5, 5, 10, 31, 3, 13, 13, 29, 13, 5, 3, 11, 3, 3, 3, 3, 10};
+    /**
+     * The largest transform length supported by all primes.
+     */
+    private static final int NTT_MAX_LENGTH = 1 << 22;
 
     public Polynomial() {
         coefficients = new ExtDecimal[1];
@@ -61,12 +95,16 @@ public class Polynomial extends VectorSpaceElement {
      */
     public int getDegree() {
         if (degree == -2) {
+            // Scanned into a local, so other threads never see a partial result
+            int d = -1;
             for (int i = coefficients.length - 1; i >= 0; i--) {
                 if (coefficients[i].compareTo(ExtDecimal.ZERO) != 0) {
-                    return i;
+                    d = i;
+                    break;
                 }
             }
-            return -1;
+            degree = d;
+            return d;
         } else {
             return degree;
         }
@@ -99,6 +137,69 @@ public class Polynomial extends VectorSpaceElement {
         return valueFor(new ExtDecimal(x));
     }
 
+    /**
+     * Returns the values of the polynomial for several values of x. The points
+     * are evaluated in parallel. With the common scales t of the coefficients
+     * and s of the points, x = A / 10^s turns 10^(t + s d) this(x) into a
+     * polynomial G(A) with integer coefficients, which is prepared only once.
+     * Horner's method then works on {@code BigInteger}s and needs no scale
+     * alignment per step. The values are numerically equal to the ones of
+     * {@link #valueFor(ExtDecimal)}.
+     *
+     * @param points
+     * @return {@code [this(points[0]), this(points[1]), ...]}
+     */
+    public ExtDecimal[] valuesFor(final ExtDecimal... points) {
+        final ExtDecimal[] values = new ExtDecimal[points.length];
+        int degree = getDegree();
+        if (degree < 0 || !isNumeric(coefficients) || !isNumeric(points)) {
+            IntStream.range(0, points.length).parallel().forEach(j -> values[j] = valueFor(points[j]));
+            return values;
+        }
+        int scale = Math.max(maxScale(coefficients, degree), 0);
+        int pscale = Math.max(maxScale(points, points.length - 1), 0);
+        final BigInteger[] g = unscaledValues(coefficients, degree, scale);
+        BigInteger power = BigInteger.ONE;
+        BigInteger step = BigInteger.TEN.pow(pscale);
+        for (int i = degree; i >= 0; i--) {
+            g[i] = g[i].multiply(power);
+            power = power.multiply(step);
+        }
+        final BigInteger[] a = unscaledValues(points, points.length - 1, pscale);
+        final int valuescale = scale + pscale * degree;
+        IntStream.range(0, points.length).parallel().forEach(j -> {
+            BigInteger y = BigInteger.ZERO;
+            for (int i = g.length - 1; i >= 0; i--) {
+                y = y.multiply(a[j]).add(g[i]);
+            }
+            values[j] = new ExtDecimal(new BigDecimal(y, valuescale));
+        });
+        return values;
+    }
+
+    /**
+     * Returns the values of the polynomial for a stream of values of x in the
+     * same order.
+     *
+     * @param points
+     * @return {@code this(x)} for every x of {@code points}
+     * @see #valuesFor(ExtDecimal...)
+     */
+    public Stream<ExtDecimal> valuesFor(Stream<ExtDecimal> points) {
+        return Arrays.stream(valuesFor(points.toArray(ExtDecimal[]::new)));
+    }
+
+    /**
+     * Converts this polynomial to a {@code DoublePolynomial} for fast
+     * evaluation in double precision.
+     *
+     * @return {@code this} with {@code double} coefficients
+     * @see DoublePolynomial#isExactlyRepresentable(Polynomial)
+     */
+    public DoublePolynomial toDoublePolynomial() {
+        return new DoublePolynomial(this);
+    }
+
     /**
      * Returns the derivation of the polynomial
      *
@@ -171,28 +272,499 @@ public class Polynomial extends VectorSpaceElement {
 
     /**
      * Returns a {@code Polynomial} whose value is {@code (this * multiplicand)}.
-     * Verbesserbar, vielleicht mit Karazuba
+     * Small polynomials are multiplied with the schoolbook method, larger ones
+     * with Karatsuba or Toom-3 on the unscaled values. The coefficients of the
+     * result are identical to the ones of the schoolbook method (value and
+     * scale).
      *
      * @param multiplicand value to be multiplied with this {@code Polynomial}.
      * @return {@code this * multiplicand}.
      */
     public Polynomial multiply(Polynomial multiplicand) {
-        int carraylength = Math.max(getDegree() + multiplicand.getDegree(), 0) + 1;
-        ExtDecimal[] c = new ExtDecimal[carraylength];
+        int degree = getDegree();
+        int mdegree = multiplicand.getDegree();
+        if (degree >= 0 && mdegree >= 0) {
+            if (Math.min(degree, mdegree) + 1 >= KARATSUBA_THRESHOLD
+                    && isNumeric(coefficients) && isNumeric(multiplicand.getCoefficients())) {
+                return multiplyFast(multiplicand);
+            } else {
+                return multiplySchoolbook(multiplicand);
+            }
+        } else {
+            return Polynomial.ZERO;
+        }
+    }
+
+    /**
+     * The schoolbook multiplication O(n²). The sums are exact and built in an
+     * {@link ExtDecimalAccumulator}.
+     *
+     * @param multiplicand
+     * @return {@code this * multiplicand}.
+     */
+    private Polynomial multiplySchoolbook(Polynomial multiplicand) {
+        int degree = getDegree();
+        int mdegree = multiplicand.getDegree();
+        ExtDecimal[] c = new ExtDecimal[degree + mdegree + 1];
+        ExtDecimal[] mcoefficients = multiplicand.getCoefficients();
+        ExtDecimalAccumulator sum = new ExtDecimalAccumulator();
+        for (int n = 0; n <= degree + mdegree; n++) {
+            sum.reset();
+            for (int i = Math.max(0, n - mcoefficients.length + 1); i <= Math.min(n, coefficients.length - 1); i++) {
+                sum.multiplyAdd(coefficients[i], mcoefficients[n - i]);
+            }
+            c[n] = sum.toExtDecimal();
+        }
+        return new Polynomial(c);
+    }
+
+    /**
+     * Multiplies the unscaled values of both polynomials with Karatsuba, Toom-3
+     * or the number-theoretic transform and gives every coefficient the scale the schoolbook method would
+     * have produced.
+     *
+     * @param multiplicand
+     * @return {@code this * multiplicand}.
+     */
+    private Polynomial multiplyFast(Polynomial multiplicand) {
+        int degree = getDegree();
+        int mdegree = multiplicand.getDegree();
         ExtDecimal[] mcoefficients = multiplicand.getCoefficients();
+        int scale = maxScale(coefficients, degree);
+        int mscale = maxScale(mcoefficients, mdegree);
+        BigInteger[] product = multiply(unscaledValues(coefficients, degree, scale),
+                unscaledValues(mcoefficients, mdegree, mscale));
+        int[] scales = productScales(coefficients, mcoefficients, degree + mdegree);
+        ExtDecimal[] c = new ExtDecimal[degree + mdegree + 1];
+        for (int n = 0; n < c.length; n++) {
+            c[n] = new ExtDecimal(new BigDecimal(product[n], scale + mscale).setScale(scales[n]));
+        }
+        return new Polynomial(c);
+    }
 
-        if (getDegree() >= 0 && multiplicand.getDegree() >= 0) {
-            for (int n = 0; n <= getDegree() + multiplicand.getDegree(); n++) {
-                c[n] = ExtDecimal.ZERO;
-                for (int i = 0; i <= n; i++) {
-                    if (coefficients.length > i && mcoefficients.length > n - i) {
-                        c[n] = c[n].add(coefficients[i].multiply(mcoefficients[n - i]));
-                    }
+    /**
+     * Returns true if no coefficient is a special value like INFINITY.
+     */
+    private static boolean isNumeric(ExtDecimal[] coeff) {
+        for (int i = 0; i < coeff.length; i++) {
+            if (coeff[i].toBigDecimal() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the smallest scale at which all coefficients are exact. Trailing
+     * zeros are ignored, so integer coefficients like 5.00 give a scale of at
+     * most 0 and their unscaled values stay as small as possible.
+     */
+    private static int maxScale(ExtDecimal[] coeff, int degree) {
+        int scale = Integer.MIN_VALUE;
+        for (int i = 0; i <= degree; i++) {
+            BigDecimal value = coeff[i].toBigDecimal();
+            if (value.signum() != 0) {
+                scale = Math.max(scale, value.stripTrailingZeros().scale());
+            }
+        }
+        return scale;
+    }
+
+    private static BigInteger[] unscaledValues(ExtDecimal[] coeff, int degree, int scale) {
+        BigInteger[] values = new BigInteger[degree + 1];
+        for (int i = 0; i <= degree; i++) {
+            values[i] = coeff[i].toBigDecimal().setScale(scale).unscaledValue();
+        }
+        return values;
+    }
+
+    /**
+     * Calculates the scales of the schoolbook result: the scale of c[n] is the
+     * maximum of 0 and all scales of the products a[i] * b[n - i] which are
+     * added to it.
+     */
+    private static int[] productScales(ExtDecimal[] a, ExtDecimal[] b, int maxn) {
+        int alength = Math.min(a.length, maxn + 1);
+        int blength = Math.min(b.length, maxn + 1);
+        int[] scales = new int[maxn + 1];
+        boolean uniform = true;
+        for (int i = 1; i < alength && uniform; i++) {
+            uniform = a[i].scale() == a[0].scale();
+        }
+        for (int j = 1; j < blength && uniform; j++) {
+            uniform = b[j].scale() == b[0].scale();
+        }
+        if (uniform) {
+            Arrays.fill(scales, Math.max(a[0].scale() + b[0].scale(), 0));
+        } else {
+            int[] bscales = new int[blength];
+            for (int j = 0; j < blength; j++) {
+                bscales[j] = b[j].scale();
+            }
+            for (int i = 0; i < alength; i++) {
+                int ascale = a[i].scale();
+                for (int j = 0; j < blength && i + j <= maxn; j++) {
+                    scales[i + j] = Math.max(scales[i + j], ascale + bscales[j]);
                 }
             }
-            return new Polynomial(c);
+        }
+        return scales;
+    }
+
+    /**
+     * Multiplies two polynomials given by their integer coefficients. Very
+     * unbalanced factors are cut into pieces of the size of the shorter one.
+     *
+     * @param a
+     * @param b
+     * @return {@code a * b}
+     */
+    static BigInteger[] multiply(BigInteger[] a, BigInteger[] b) {
+        if (a.length < b.length) {
+            BigInteger[] t = a;
+            a = b;
+            b = t;
+        }
+        if (b.length >= NTT_THRESHOLD && a.length + b.length - 1 <= NTT_MAX_LENGTH) {
+            int primes = nttPrimesNeeded(a, b);
+            if (primes <= NTT_PRIMES.length) {
+                return multiplyNtt(a, b, primes);
+            }
+        }
+        BigInteger[] c = new BigInteger[a.length + b.length - 1];
+        Arrays.fill(c, BigInteger.ZERO);
+        for (int offset = 0; offset < a.length; offset += b.length) {
+            BigInteger[] part = new BigInteger[b.length];
+            for (int i = 0; i < b.length; i++) {
+                part[i] = offset + i < a.length ? a[offset + i] : BigInteger.ZERO;
+            }
+            BigInteger[] partproduct = multiplyBalanced(part, b);
+            for (int i = 0; i < partproduct.length && offset + i < c.length; i++) {
+                c[offset + i] = c[offset + i].add(partproduct[i]);
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Returns the number of NTT primes whose product exceeds twice the largest
+     * possible absolute value of a coefficient of {@code a * b}.
+     */
+    private static int nttPrimesNeeded(BigInteger[] a, BigInteger[] b) {
+        int bits = maxBitLength(a) + maxBitLength(b) + 32 - Integer.numberOfLeadingZeros(b.length) + 1;
+        return bits / 30 + 1;
+    }
+
+    private static int maxBitLength(BigInteger[] a) {
+        int bits = 0;
+        for (int i = 0; i < a.length; i++) {
+            bits = Math.max(bits, a[i].bitLength());
+        }
+        return bits;
+    }
+
+    /**
+     * Multiplies with the number-theoretic transform modulo several primes and
+     * reconstructs the exact coefficients with the chinese remainder theorem
+     * (Garner's algorithm).
+     *
+     * @param a
+     * @param b
+     * @param primes number of primes to use
+     * @return {@code a * b}
+     */
+    private static BigInteger[] multiplyNtt(BigInteger[] a, BigInteger[] b, int primes) {
+        int clength = a.length + b.length - 1;
+        int length = Integer.highestOneBit(clength);
+        if (length < clength) {
+            length <<= 1;
+        }
+        long[][] residues = new long[primes][];
+        for (int k = 0; k < primes; k++) {
+            long p = NTT_PRIMES[k];
+            long[] fa = residues(a, p, length);
+            long[] fb = residues(b, p, length);
+            ntt(fa, p, NTT_ROOTS[k], false);
+            ntt(fb, p, NTT_ROOTS[k], false);
+            for (int i = 0; i < length; i++) {
+                fa[i] = fa[i] * fb[i] % p;
+            }
+            ntt(fa, p, NTT_ROOTS[k], true);
+            residues[k] = fa;
+        }
+        // Garner: x = x0 + x1 p0 + x2 p0 p1 + ...
+        long[][] prefix = new long[primes][primes];
+        long[] inverse = new long[primes];
+        for (int k = 0; k < primes; k++) {
+            long p = NTT_PRIMES[k];
+            long product = 1;
+            for (int j = 0; j < k; j++) {
+                prefix[k][j] = product;
+                product = product * (NTT_PRIMES[j] % p) % p;
+            }
+            inverse[k] = modPow(product, p - 2, p);
+        }
+        BigInteger modulus = BigInteger.ONE;
+        for (int k = 0; k < primes; k++) {
+            modulus = modulus.multiply(BigInteger.valueOf(NTT_PRIMES[k]));
+        }
+        BigInteger halfmodulus = modulus.shiftRight(1);
+        BigInteger[] c = new BigInteger[clength];
+        long[] digits = new long[primes];
+        for (int i = 0; i < clength; i++) {
+            for (int k = 0; k < primes; k++) {
+                long p = NTT_PRIMES[k];
+                long sum = 0;
+                for (int j = 0; j < k; j++) {
+                    sum = (sum + digits[j] * prefix[k][j]) % p;
+                }
+                digits[k] = (residues[k][i] - sum + p) % p * inverse[k] % p;
+            }
+            BigInteger value;
+            if (primes == 1) {
+                value = BigInteger.valueOf(digits[0]);
+            } else if (primes == 2) {
+                value = BigInteger.valueOf(digits[0] + digits[1] * NTT_PRIMES[0]);
+            } else {
+                value = BigInteger.valueOf(digits[primes - 1]);
+                for (int k = primes - 2; k >= 0; k--) {
+                    value = value.multiply(BigInteger.valueOf(NTT_PRIMES[k])).add(BigInteger.valueOf(digits[k]));
+                }
+            }
+            if (value.compareTo(halfmodulus) > 0) {
+                value = value.subtract(modulus);
+            }
+            c[i] = value;
+        }
+        return c;
+    }
+
+    /**
+     * Returns the coefficients modulo p, filled up with zeros to the given
+     * length.
+     */
+    private static long[] residues(BigInteger[] a, long p, int length) {
+        long[] r = new long[length];
+        BigInteger bigp = BigInteger.valueOf(p);
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].bitLength() < 63) {
+                r[i] = a[i].longValue() % p;
+                if (r[i] < 0) {
+                    r[i] += p;
+                }
+            } else {
+                r[i] = a[i].mod(bigp).longValue();
+            }
+        }
+        return r;
+    }
+
+    /**
+     * The iterative in-place number-theoretic transform modulo p. The length
+     * of {@code a} has to be a power of two dividing p - 1.
+     *
+     * @param a values modulo p
+     * @param p prime
+     * @param g primitive root modulo p
+     * @param invert true for the inverse transform
+     */
+    private static void ntt(long[] a, long p, long g, boolean invert) {
+        int n = a.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                long t = a[i];
+                a[i] = a[j];
+                a[j] = t;
+            }
+        }
+        // Powers of a primitive n-th root of unity
+        long[] roots = new long[Math.max(n / 2, 1)];
+        long w = modPow(g, (p - 1) / n, p);
+        if (invert) {
+            w = modPow(w, p - 2, p);
+        }
+        roots[0] = 1;
+        for (int i = 1; i < roots.length; i++) {
+            roots[i] = roots[i - 1] * w % p;
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            int half = len >> 1;
+            int stride = n / len;
+            for (int i = 0; i < n; i += len) {
+                for (int j = 0; j < half; j++) {
+                    long u = a[i + j];
+                    long v = a[i + j + half] * roots[j * stride] % p;
+                    long s = u + v;
+                    a[i + j] = s >= p ? s - p : s;
+                    long d = u - v;
+                    a[i + j + half] = d < 0 ? d + p : d;
+                }
+            }
+        }
+        if (invert) {
+            long ninv = modPow(n, p - 2, p);
+            for (int i = 0; i < n; i++) {
+                a[i] = a[i] * ninv % p;
+            }
+        }
+    }
+
+    private static long modPow(long base, long exponent, long p) {
+        long result = 1;
+        base %= p;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1) {
+                result = result * base % p;
+            }
+            base = base * base % p;
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies two polynomials with the same number of coefficients and
+     * picks the algorithm by this number.
+     *
+     * @param a
+     * @param b
+     * @return {@code a * b} with {@code 2n - 1} coefficients
+     */
+    private static BigInteger[] multiplyBalanced(BigInteger[] a, BigInteger[] b) {
+        if (a.length < KARATSUBA_THRESHOLD) {
+            return multiplySchoolbook(a, b);
+        } else if (a.length < TOOM3_THRESHOLD) {
+            return multiplyKaratsuba(a, b);
         } else {
-            return Polynomial.ZERO;
+            return multiplyToom3(a, b);
+        }
+    }
+
+    private static BigInteger[] multiplySchoolbook(BigInteger[] a, BigInteger[] b) {
+        BigInteger[] c = new BigInteger[a.length + b.length - 1];
+        Arrays.fill(c, BigInteger.ZERO);
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].signum() != 0) {
+                for (int j = 0; j < b.length; j++) {
+                    c[i + j] = c[i + j].add(a[i].multiply(b[j]));
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Karatsuba: (a0 + a1 x^m)(b0 + b1 x^m) needs only the three products
+     * a0*b0, a1*b1 and (a0 + a1)(b0 + b1).
+     */
+    private static BigInteger[] multiplyKaratsuba(BigInteger[] a, BigInteger[] b) {
+        int n = a.length;
+        int m = n / 2;
+        int h = n - m;
+        BigInteger[] a0 = part(a, 0, m, m);
+        BigInteger[] b0 = part(b, 0, m, m);
+        BigInteger[] a1 = part(a, m, h, h);
+        BigInteger[] b1 = part(b, m, h, h);
+        BigInteger[] z0 = multiplyBalanced(a0, b0);
+        BigInteger[] z2 = multiplyBalanced(a1, b1);
+        BigInteger[] z1 = multiplyBalanced(sum(part(a0, 0, m, h), a1), sum(part(b0, 0, m, h), b1));
+        BigInteger[] c = new BigInteger[2 * n - 1];
+        Arrays.fill(c, BigInteger.ZERO);
+        for (int i = 0; i < z0.length; i++) {
+            c[i] = z0[i];
+            z1[i] = z1[i].subtract(z0[i]);
+        }
+        for (int i = 0; i < z2.length; i++) {
+            c[i + 2 * m] = c[i + 2 * m].add(z2[i]);
+            z1[i] = z1[i].subtract(z2[i]);
+        }
+        for (int i = 0; i < z1.length; i++) {
+            c[i + m] = c[i + m].add(z1[i]);
+        }
+        return c;
+    }
+
+    /**
+     * Toom-3: evaluates both factors at 0, 1, -1, -2 and infinity, multiplies
+     * pointwise and interpolates with Bodrato's sequence.
+     */
+    private static BigInteger[] multiplyToom3(BigInteger[] a, BigInteger[] b) {
+        int n = a.length;
+        int k = (n + 2) / 3;
+        BigInteger[][] pa = toom3Evaluate(part(a, 0, k, k), part(a, k, k, k), part(a, 2 * k, n - 2 * k, k));
+        BigInteger[][] pb = toom3Evaluate(part(b, 0, k, k), part(b, k, k, k), part(b, 2 * k, n - 2 * k, k));
+        BigInteger[] r0 = multiplyBalanced(pa[0], pb[0]);
+        BigInteger[] r1 = multiplyBalanced(pa[1], pb[1]);
+        BigInteger[] rm1 = multiplyBalanced(pa[2], pb[2]);
+        BigInteger[] rm2 = multiplyBalanced(pa[3], pb[3]);
+        BigInteger[] r4 = multiplyBalanced(pa[4], pb[4]);
+        BigInteger three = BigInteger.valueOf(3);
+        BigInteger[] c = new BigInteger[2 * n - 1];
+        Arrays.fill(c, BigInteger.ZERO);
+        for (int i = 0; i < r0.length; i++) {
+            BigInteger c3 = rm2[i].subtract(r1[i]).divide(three);
+            BigInteger c1 = r1[i].subtract(rm1[i]).shiftRight(1);
+            BigInteger c2 = rm1[i].subtract(r0[i]);
+            c3 = c2.subtract(c3).shiftRight(1).add(r4[i].shiftLeft(1));
+            c2 = c2.add(c1).subtract(r4[i]);
+            c1 = c1.subtract(c3);
+            addAt(c, i, r0[i]);
+            addAt(c, i + k, c1);
+            addAt(c, i + 2 * k, c2);
+            addAt(c, i + 3 * k, c3);
+            addAt(c, i + 4 * k, r4[i]);
+        }
+        return c;
+    }
+
+    /**
+     * Returns the values of a0 + a1 x + a2 x² at 0, 1, -1, -2 and infinity.
+     */
+    private static BigInteger[][] toom3Evaluate(BigInteger[] a0, BigInteger[] a1, BigInteger[] a2) {
+        int k = a0.length;
+        BigInteger[][] p = new BigInteger[5][k];
+        for (int i = 0; i < k; i++) {
+            BigInteger t = a0[i].add(a2[i]);
+            p[0][i] = a0[i];
+            p[1][i] = t.add(a1[i]);
+            p[2][i] = t.subtract(a1[i]);
+            p[3][i] = p[2][i].add(a2[i]).shiftLeft(1).subtract(a0[i]);
+            p[4][i] = a2[i];
+        }
+        return p;
+    }
+
+    /**
+     * Copies {@code count} coefficients starting at {@code from} into an
+     * array of the given length, filled up with zeros.
+     */
+    private static BigInteger[] part(BigInteger[] a, int from, int count, int length) {
+        BigInteger[] p = new BigInteger[length];
+        System.arraycopy(a, from, p, 0, count);
+        Arrays.fill(p, count, length, BigInteger.ZERO);
+        return p;
+    }
+
+    private static BigInteger[] sum(BigInteger[] a, BigInteger[] b) {
+        BigInteger[] s = new BigInteger[a.length];
+        for (int i = 0; i < a.length; i++) {
+            s[i] = a[i].add(b[i]);
+        }
+        return s;
+    }
+
+    /**
+     * Adds {@code value} to {@code c[index]}. Indices beyond the array belong
+     * to the zero padding and are skipped.
+     */
+    private static void addAt(BigInteger[] c, int index, BigInteger value) {
+        if (index < c.length) {
+            c[index] = c[index].add(value);
         }
     }
 
@@ -0,0 +1,104 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package mathbib;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Iterates over the primes of a range in ascending order using an
+ * incremental segmented sieve of erathosthenes. Only one segment of
+ * {@link SmallFunctions#SEGMENT_SIZE} odd numbers is held at a time, and the
+ * base primes are extended when the sieve passes their square, so the range
+ * may start anywhere below {@link #MAXIMUM} without sieving from zero.
+ */
+public class PrimeIterator implements PrimitiveIterator.OfLong {
+
+    /**
+     * The largest supported number, the base primes up to its root still fit
+     * into an {@code int}.
+     */
+    public static final long MAXIMUM = (1L << 62) - 1;
+    private final long hi;
+    private final long[] bits = new long[SmallFunctions.SEGMENT_SIZE / 64];
+    private int[] baseprimes = new int[0];
+    private long basecover = 0;
+    private long low;
+    private int length = 0;
+    private int word = 0;
+    private long free = 0;
+    private long next;
+
+    /**
+     * Creates an iterator over the primes p with {@code lo <= p <= hi}.
+     *
+     * @param lo
+     * @param hi
+     * @throws IllegalArgumentException if {@code hi > MAXIMUM}
+     */
+    public PrimeIterator(long lo, long hi) {
+        if (hi > MAXIMUM) {
+            throw new IllegalArgumentException("Upper bound too large");
+        }
+        this.hi = hi;
+        low = Math.max(lo, 3) | 1;
+        if (lo <= 2 && hi >= 2) {
+            next = 2;
+        } else {
+            next = findNext();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next >= 0;
+    }
+
+    @Override
+    public long nextLong() {
+        if (next < 0) {
+            throw new NoSuchElementException();
+        }
+        long p = next;
+        next = findNext();
+        return p;
+    }
+
+    /**
+     * Returns the next unmarked number of the current segment, sieving the
+     * following segments as needed, or -1 at the end of the range.
+     */
+    private long findNext() {
+        while (free == 0) {
+            word++;
+            if (word >= (length + 63) >>> 6) {
+                low += 2L * length;
+                if (low > hi) {
+                    return -1;
+                }
+                sieveNextSegment();
+                word = 0;
+            }
+            free = ~bits[word];
+            if (word == (length - 1) >>> 6 && (length & 63) != 0) {
+                free &= (1L << length) - 1;
+            }
+        }
+        int bit = Long.numberOfTrailingZeros(free);
+        free &= free - 1;
+        return low + 2L * ((word << 6) + bit);
+    }
+
+    private void sieveNextSegment() {
+        length = (int) Math.min(SmallFunctions.SEGMENT_SIZE, (hi - low) / 2 + 1);
+        long high = low + 2L * (length - 1);
+        if (basecover < high) {
+            // Mindestens vervierfachen, damit die Basisprimzahlen selten neu berechnet werden
+            basecover = Math.min(Math.max(high, basecover <= MAXIMUM / 4 ? 4 * basecover : MAXIMUM), MAXIMUM);
+            baseprimes = SmallFunctions.basePrimes(basecover);
+        }
+        SmallFunctions.sieveSegment(low, length, baseprimes, bits);
+    }
+}
@@ -4,12 +4,89 @@
  */
 package mathbib;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
 /**
  *
  * @author Julian Quast (c) 2013
  */
 public class SmallFunctions {
 
+    /**
+     * Number of odd numbers per segment of the segmented sieve. The bitset of
+     * a segment has 32 KiB and fits into the L1 cache.
+     */
+    static final int SEGMENT_SIZE = 32 * 1024 * 8;
+
+    /**
+     * Up to this value {@link #primeCount(long)} uses a table.
+     */
+    static final int SMALL_PI_LIMIT = 1 << 16;
+    /**
+     * Largest argument of {@link #primeCount(long)}. Its two arrays of
+     * sqrt(x) longs take about 500 MB there, and the count several minutes.
+     */
+    public static final long PRIME_COUNT_LIMIT = 1000000000000000L;
+    /**
+     * The Euler-Mascheroni constant gamma.
+     */
+    private static final double EULER = 0.57721566490153286060651209008240243;
+    /**
+     * li(2), needed for the offset logarithmic integral.
+     */
+    private static final double LI2 = 1.045163780117492784844588889194613136522615578151;
+    /**
+     * Number of factorials kept by {@link #factorial(int)}.
+     */
+    static final int FACTORIAL_CACHE_SIZE = 64;
+    /**
+     * Total number of bits of the factorials kept by {@link #factorial(int)},
+     * 8 MB. Larger results are not kept.
+     */
+    static final long FACTORIAL_CACHE_BITS = 1L << 26;
+    /**
+     * The factorials 0! to 20!, which fit into a {@code long}.
+     */
+    private static final long[] SMALL_FACTORIALS = new long[21];
+
+    static {
+        SMALL_FACTORIALS[0] = 1;
+        for (int i = 1; i < SMALL_FACTORIALS.length; i++) {
+            SMALL_FACTORIALS[i] = SMALL_FACTORIALS[i - 1] * i;
+        }
+    }
+    /**
+     * Recently used factorials in access order, and their number of bits.
+     * Both are guarded by {@code FACTORIALS}.
+     */
+    private static final Map<Integer, BigInteger> FACTORIALS = new LinkedHashMap<Integer, BigInteger>(FACTORIAL_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, BigInteger> eldest) {
+            // Removes the eldest entries until both limits hold
+            Iterator<BigInteger> it = values().iterator();
+            while (size() > FACTORIAL_CACHE_SIZE || factorialBits > FACTORIAL_CACHE_BITS) {
+                factorialBits -= it.next().bitLength();
+                it.remove();
+            }
+            return false;
+        }
+    };
+    private static long factorialBits;
+
     /**
      * This function returns a prime list using the sieve of erathosthenes.
      *
@@ -140,14 +217,617 @@ public class SmallFunctions {
         }
     }
 
+    /**
+     * This function returns a prime list using the segmented sieve of
+     * erathosthenes. It returns the same list as {@link #primeList3(int)} but
+     * needs only memory for the result and O(sqrt(n)) for the sieve.
+     *
+     * @param maximum
+     * @return all primes {@code <= maximum}
+     */
+    public static int[] primeListSegmented(int maximum) {
+        final int[][] list = {new int[estimatePrimeCount(maximum)]};
+        final int[] primes = {0};
+        forEachPrime(maximum, new LongConsumer() {
+            @Override
+            public void accept(long p) {
+                if (primes[0] == list[0].length) {
+                    list[0] = Arrays.copyOf(list[0], list[0].length * 2);
+                }
+                list[0][primes[0]++] = (int) p;
+            }
+        });
+        return Arrays.copyOf(list[0], primes[0]);
+    }
+
+    /**
+     * Calls {@code action} for every prime {@code <= maximum} in ascending
+     * order. The range is sieved in segments of {@link #SEGMENT_SIZE} odd
+     * numbers, each stored as a bitset, so the memory grows with sqrt(maximum)
+     * and 10^10 and beyond are possible. The maximum has to be smaller than
+     * 2^62.
+     *
+     * @param maximum
+     * @param action
+     */
+    public static void forEachPrime(long maximum, LongConsumer action) {
+        if (maximum < 2) {
+            return;
+        }
+        action.accept(2);
+        int[] baseprimes = basePrimes(maximum);
+        long[] bits = new long[SEGMENT_SIZE / 64];
+        for (long low = 3; low <= maximum; low += 2L * SEGMENT_SIZE) {
+            int length = (int) Math.min(SEGMENT_SIZE, (maximum - low) / 2 + 1);
+            sieveSegment(low, length, baseprimes, bits);
+            forEachUnmarked(low, length, bits, action);
+        }
+    }
+
+    /**
+     * Returns an iterator over all primes in ascending order. The primes are
+     * sieved lazily segment by segment.
+     *
+     * @return 2, 3, 5, 7, 11, ...
+     * @see PrimeIterator
+     */
+    public static PrimitiveIterator.OfLong primeIterator() {
+        return new PrimeIterator(2, PrimeIterator.MAXIMUM);
+    }
+
+    /**
+     * Returns a lazy stream of all primes in ascending order. The first k
+     * primes are for example {@code primes().limit(k).toArray()}.
+     *
+     * @return 2, 3, 5, 7, 11, ...
+     */
+    public static LongStream primes() {
+        return primesBetween(2, PrimeIterator.MAXIMUM);
+    }
+
+    /**
+     * Returns a lazy stream of the primes p with {@code lo <= p <= hi} in
+     * ascending order. Only the range itself is sieved, not the numbers below
+     * {@code lo}.
+     *
+     * @param lo
+     * @param hi
+     * @return the primes between lo and hi
+     */
+    public static LongStream primesBetween(long lo, long hi) {
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(new PrimeIterator(lo, hi),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED
+                | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * This function returns a prime list using the segmented sieve of
+     * erathosthenes on all processors. It returns the same list as
+     * {@link #primeList3(int)}.
+     *
+     * @param maximum
+     * @return all primes {@code <= maximum}
+     */
+    public static int[] primeListParallel(int maximum) {
+        return primeListParallel(maximum, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * This function returns a prime list using the segmented sieve of
+     * erathosthenes. The segments are sieved concurrently in a
+     * {@code ForkJoinPool} with the given parallelism and share the base
+     * primes. It returns the same list as {@link #primeList3(int)}.
+     *
+     * @param maximum
+     * @param parallelism number of threads
+     * @return all primes {@code <= maximum}
+     */
+    public static int[] primeListParallel(int maximum, int parallelism) {
+        if (maximum < 2) {
+            return new int[0];
+        }
+        int[] baseprimes = basePrimes(maximum);
+        int segments = maximum < 3 ? 0 : (int) (((maximum - 3L) / 2 + SEGMENT_SIZE) / SEGMENT_SIZE);
+        int[][] chunks = new int[segments][];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SieveTask(maximum, baseprimes, chunks, 0, segments));
+        } finally {
+            pool.shutdown();
+        }
+        // Zusammenfügen in der richtigen Reihenfolge
+        int primes = 1;
+        for (int i = 0; i < segments; i++) {
+            primes += chunks[i].length;
+        }
+        int[] primelist = new int[primes];
+        primelist[0] = 2;
+        int c = 1;
+        for (int i = 0; i < segments; i++) {
+            System.arraycopy(chunks[i], 0, primelist, c, chunks[i].length);
+            c += chunks[i].length;
+        }
+        return primelist;
+    }
+
+    /**
+     * Sieves the segments from {@code first} to {@code last - 1} and stores
+     * the odd primes of segment i in {@code chunks[i]}. Larger ranges are
+     * split in halves.
+     */
+    private static class SieveTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int SEGMENTS_PER_TASK = 4;
+        private final long maximum;
+        private final int[] baseprimes;
+        private final int[][] chunks;
+        private final int first;
+        private final int last;
+
+        SieveTask(long maximum, int[] baseprimes, int[][] chunks, int first, int last) {
+            this.maximum = maximum;
+            this.baseprimes = baseprimes;
+            this.chunks = chunks;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > SEGMENTS_PER_TASK) {
+                int mid = (first + last) >>> 1;
+                invokeAll(new SieveTask(maximum, baseprimes, chunks, first, mid),
+                        new SieveTask(maximum, baseprimes, chunks, mid, last));
+            } else {
+                long[] bits = new long[SEGMENT_SIZE / 64];
+                for (int i = first; i < last; i++) {
+                    long low = 3 + 2L * SEGMENT_SIZE * i;
+                    int length = (int) Math.min(SEGMENT_SIZE, (maximum - low) / 2 + 1);
+                    sieveSegment(low, length, baseprimes, bits);
+                    final int[] chunk = new int[countUnmarked(length, bits)];
+                    final int[] c = {0};
+                    forEachUnmarked(low, length, bits, new LongConsumer() {
+                        @Override
+                        public void accept(long p) {
+                            chunk[c[0]++] = (int) p;
+                        }
+                    });
+                    chunks[i] = chunk;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits not set among the first {@code length} bits.
+     */
+    static int countUnmarked(int length, long[] bits) {
+        int words = length >>> 6;
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += 64 - Long.bitCount(bits[w]);
+        }
+        if ((length & 63) != 0) {
+            count += (length & 63) - Long.bitCount(bits[words] & ((1L << length) - 1));
+        }
+        return count;
+    }
+
+    /**
+     * Returns the primes up to sqrt(maximum), which are needed to sieve up to
+     * maximum.
+     */
+    static int[] basePrimes(long maximum) {
+        long root = (long) Math.sqrt((double) maximum);
+        while (root * root > maximum) {
+            root--;
+        }
+        while ((root + 1) * (root + 1) <= maximum) {
+            root++;
+        }
+        if (root <= SEGMENT_SIZE) {
+            return primeList3((int) root);
+        } else {
+            return primeListSegmented((int) root);
+        }
+    }
+
+    /**
+     * Sieves the odd numbers low, low + 2, ..., low + 2 (length - 1). Bit i of
+     * {@code bits} is set if low + 2i is composite. The numbers 1 and the
+     * base primes themselves are handled correctly only if {@code low >= 3}.
+     *
+     * @param low odd start of the segment
+     * @param length number of odd numbers in the segment
+     * @param baseprimes all primes up to the root of the end of the segment
+     * @param bits bitset with at least {@code length} bits
+     */
+    static void sieveSegment(long low, int length, int[] baseprimes, long[] bits) {
+        Arrays.fill(bits, 0, (length + 63) >>> 6, 0L);
+        long high = low + 2L * (length - 1);
+        // The 2 in baseprimes[0] is skipped, only odd numbers are stored
+        for (int k = 1; k < baseprimes.length; k++) {
+            long p = baseprimes[k];
+            long start = p * p;
+            if (start > high) {
+                break;
+            }
+            if (start < low) {
+                start = (low + p - 1) / p * p;
+                if ((start & 1) == 0) {
+                    start += p;
+                }
+            }
+            for (long i = (start - low) >>> 1; i < length; i += p) {
+                bits[(int) (i >>> 6)] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Calls {@code action} for every number of the segment whose bit is not
+     * set.
+     */
+    static void forEachUnmarked(long low, int length, long[] bits, LongConsumer action) {
+        int words = (length + 63) >>> 6;
+        for (int w = 0; w < words; w++) {
+            long free = ~bits[w];
+            if (w == words - 1 && (length & 63) != 0) {
+                free &= (1L << length) - 1;
+            }
+            while (free != 0) {
+                int bit = Long.numberOfTrailingZeros(free);
+                action.accept(low + 2L * ((w << 6) + bit));
+                free &= free - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns an upper bound of the number of primes {@code <= n}
+     * (Rosser-Schoenfeld: pi(n) < 1.25506 n / ln(n) for n > 1).
+     */
+    static int estimatePrimeCount(long n) {
+        if (n < 17) {
+            return 6;
+        }
+        return (int) Math.min(Integer.MAX_VALUE - 8, (long) (1.25506 * n / Math.log(n)) + 1);
+    }
+
+    /**
+     * Returns the number of primes {@code <= x} without enumerating them,
+     * using the Lucy_Hedgehog variant of the Legendre-Meissel method. It
+     * needs O(x^(3/4)) time and O(sqrt(x)) memory, so 10^12 takes about a
+     * second. Values up to {@link #SMALL_PI_LIMIT} are taken from a table.
+     *
+     * @param x at most {@link #PRIME_COUNT_LIMIT}
+     * @return {@code pi(x)}
+     * @throws IllegalArgumentException if {@code x > PRIME_COUNT_LIMIT}
+     */
+    public static long primeCount(long x) {
+        if (x > PRIME_COUNT_LIMIT) {
+            throw new IllegalArgumentException("primeCount supports x <= " + PRIME_COUNT_LIMIT + ": " + x);
+        } else if (x < 2) {
+            return 0;
+        } else if (x <= SMALL_PI_LIMIT) {
+            return SmallPi.TABLE[(int) x];
+        }
+        int r = (int) Math.sqrt((double) x);
+        while ((long) r * r > x) {
+            r--;
+        }
+        while ((long) (r + 1) * (r + 1) <= x) {
+            r++;
+        }
+        // small[v] = S(v) for v <= r, large[i] = S(x / i) for i <= r,
+        // where S(v) counts the numbers in [2, v] not yet sieved out
+        long[] small = new long[r + 1];
+        long[] large = new long[r + 1];
+        for (int v = 1; v <= r; v++) {
+            small[v] = v - 1;
+            large[v] = x / v - 1;
+        }
+        for (int p = 2; p <= r; p++) {
+            if (small[p] == small[p - 1]) {
+                continue;
+            }
+            long sp = small[p - 1];
+            long p2 = (long) p * p;
+            long end = Math.min(r, x / p2);
+            for (int i = 1; i <= end; i++) {
+                long d = (long) i * p;
+                large[i] -= (d <= r ? large[(int) d] : small[(int) (x / d)]) - sp;
+            }
+            for (int v = r; v >= p2; v--) {
+                small[v] -= small[v / p] - sp;
+            }
+        }
+        return large[1];
+    }
+
+    /**
+     * The table of pi(n) for n up to {@code SMALL_PI_LIMIT}, built on first
+     * use.
+     */
+    private static class SmallPi {
+
+        static final int[] TABLE = new int[SMALL_PI_LIMIT + 1];
+
+        static {
+            int[] primelist = primeList3(SMALL_PI_LIMIT);
+            int c = 0;
+            for (int n = 0; n <= SMALL_PI_LIMIT; n++) {
+                if (c < primelist.length && primelist[c] == n) {
+                    c++;
+                }
+                TABLE[n] = c;
+            }
+        }
+    }
+
+    /**
+     * The logarithmic integral li(x), the principal value of the integral of
+     * 1/ln(t) from 0 to x. It uses Ramanujan's series
+     * <pre>
+     * li(x) = gamma + ln|ln x| + sqrt(x) sum_{n>=1} (-1)^(n-1) (ln x)^n / (n! 2^(n-1)) sum_{k=0}^{(n-1)/2} 1/(2k+1)
+     * </pre> and the asymptotic expansion x/ln x sum k!/(ln x)^k for
+     * {@code x > e^44}, both to double precision.
+     *
+     * @param arg
+     * @return {@code li(arg)}
+     */
     public static double li(double arg) {
-        int fragments = 10000000;
-        double val = 0;
-        double dx = arg / fragments;
-        for (int i = 0; i < fragments; i++) {
-            val += dx / Math.log(arg / i);
+        if (arg < 0 || Double.isNaN(arg)) {
+            return Double.NaN;
+        } else if (arg == 0) {
+            return 0;
+        } else if (arg == 1) {
+            return Double.NEGATIVE_INFINITY;
+        } else if (Double.isInfinite(arg)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double ln = Math.log(arg);
+        if (ln > 44) {
+            // Asymptotische Entwicklung bis zum kleinsten Glied
+            double sum = 1;
+            double term = 1;
+            for (int k = 1; k < ln; k++) {
+                double next = term * k / ln;
+                if (next < 1e-17 || next > term) {
+                    break;
+                }
+                term = next;
+                sum += term;
+            }
+            return arg / ln * sum;
+        }
+        double sum = 0;
+        double term = ln;
+        double inner = 1;
+        for (int n = 1; n < 1000; n++) {
+            if (n % 2 == 1 && n > 1) {
+                inner += 1.0 / n;
+            }
+            double augend = term * inner;
+            sum += n % 2 == 1 ? augend : -augend;
+            if (Math.abs(augend) < 1e-17 * Math.abs(sum) && n > Math.abs(ln)) {
+                break;
+            }
+            term *= ln / (2 * (n + 1));
+        }
+        return EULER + Math.log(Math.abs(ln)) + Math.sqrt(arg) * sum;
+    }
+
+    /**
+     * The offset logarithmic integral Li(x) = li(x) - li(2), the common
+     * estimate of the number of primes {@code <= x}.
+     *
+     * @param arg
+     * @return {@code Li(arg)}
+     */
+    public static double Li(double arg) {
+        return li(arg) - LI2;
+    }
+
+    /**
+     * The logarithmic integral li(x) with the given scale, using Ramanujan's
+     * series like {@link #li(double)}. The Euler-Mascheroni constant comes
+     * from {@link Constant#GAMMA}.
+     *
+     * @param arg positive number not equal to 1
+     * @param scale
+     * @return {@code li(arg)}
+     * @throws ArithmeticException if {@code arg <= 0} or {@code arg == 1}
+     */
+    public static ExtDecimal li(ExtDecimal arg, int scale) {
+        if (!arg.isPositive() || arg.compareTo(ExtDecimal.ONE) == 0) {
+            throw new ArithmeticException("li of " + arg);
+        }
+        BigDecimal x = arg.toBigDecimal();
+        int w = scale + Math.max(x.precision() - x.scale(), 0) + 10;
+        BigDecimal ln = ExtDecimal.ln(x, w);
+        BigDecimal sum = BigDecimal.ZERO;
+        BigDecimal term = ln;
+        BigDecimal inner = BigDecimal.ONE;
+        BigDecimal epsilon = BigDecimal.ONE.movePointLeft(w);
+        double lndouble = Math.abs(ln.doubleValue());
+        for (int n = 1;; n++) {
+            if (n % 2 == 1 && n > 1) {
+                inner = inner.add(BigDecimal.ONE.divide(BigDecimal.valueOf(n), w, RoundingMode.HALF_EVEN));
+            }
+            BigDecimal augend = term.multiply(inner).setScale(w, RoundingMode.HALF_EVEN);
+            sum = n % 2 == 1 ? sum.add(augend) : sum.subtract(augend);
+            if (augend.abs().compareTo(epsilon) < 0 && n > lndouble) {
+                break;
+            }
+            term = term.multiply(ln).divide(BigDecimal.valueOf(2L * (n + 1)), w, RoundingMode.HALF_EVEN);
+        }
+        BigDecimal root = arg.sqrt(w).toBigDecimal();
+        BigDecimal result = Constant.GAMMA.toBigDecimal(w)
+                .add(ExtDecimal.ln(ln.abs(), w)).add(root.multiply(sum));
+        return new ExtDecimal(result.setScale(scale, RoundingMode.HALF_EVEN));
+    }
+
+    /**
+     * The offset logarithmic integral Li(x) = li(x) - li(2) with the given
+     * scale.
+     *
+     * @param arg
+     * @param scale
+     * @return {@code Li(arg)}
+     */
+    public static ExtDecimal Li(ExtDecimal arg, int scale) {
+        return li(arg, scale + 2).subtract(li(ExtDecimal.TWO, scale + 2)).setScale(scale, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Returns n! using the prime swing algorithm: n! = ((n/2)!)^2 swing(n),
+     * where the swing swing(n) = n! / ((n/2)!)^2 is a product of prime
+     * powers with known exponents. The factors are multiplied in a balanced
+     * product tree, so the big multiplications work on numbers of similar
+     * size. The results of the last {@link #FACTORIAL_CACHE_SIZE} calls are
+     * cached, as long as they have at most {@link #FACTORIAL_CACHE_BITS} bits
+     * together.
+     *
+     * @param n
+     * @return {@code n!}
+     * @throws ArithmeticException if {@code n < 0}
+     */
+    public static BigInteger factorial(int n) {
+        if (n < 0) {
+            throw new ArithmeticException("factorial of " + n);
+        } else if (n < SMALL_FACTORIALS.length) {
+            return BigInteger.valueOf(SMALL_FACTORIALS[n]);
+        }
+        BigInteger cached;
+        synchronized (FACTORIALS) {
+            cached = FACTORIALS.get(n);
+        }
+        if (cached == null) {
+            cached = factorial(n, n <= SEGMENT_SIZE ? primeList3(n) : primeListSegmented(n));
+            synchronized (FACTORIALS) {
+                if (cached.bitLength() <= FACTORIAL_CACHE_BITS && !FACTORIALS.containsKey(n)) {
+                    factorialBits += cached.bitLength();
+                    FACTORIALS.put(n, cached);
+                }
+            }
+        }
+        return cached;
+    }
+
+    private static BigInteger factorial(int n, int[] primes) {
+        if (n < SMALL_FACTORIALS.length) {
+            return BigInteger.valueOf(SMALL_FACTORIALS[n]);
+        }
+        BigInteger half = factorial(n / 2, primes);
+        return half.multiply(half).multiply(swing(n, primes));
+    }
+
+    /**
+     * Returns swing(n) = n! / ((n/2)!)^2. The exponent of a prime p is the
+     * number of odd values floor(n / p^i), i >= 1. Primes in (n/2, n] occur
+     * once, primes in (n/3, n/2] not at all.
+     */
+    private static BigInteger swing(int n, int[] primes) {
+        LongProduct product = new LongProduct();
+        int root = (int) Math.sqrt(n);
+        for (int i = 0; i < primes.length && primes[i] <= n; i++) {
+            int p = primes[i];
+            if (p > n / 2) {
+                product.multiply(p);
+            } else if (p > root) {
+                if (p <= n / 3 && ((n / p) & 1) == 1) {
+                    product.multiply(p);
+                }
+            } else {
+                for (int q = n / p; q > 0; q /= p) {
+                    if ((q & 1) == 1) {
+                        product.multiply(p);
+                    }
+                }
+            }
+        }
+        return product.result();
+    }
+
+    /**
+     * Returns the binomial coefficient n over k. The exponent of every prime
+     * is taken from the factorials n!, k! and (n-k)! by Legendre's formula,
+     * so no division is needed.
+     *
+     * @param n
+     * @param k
+     * @return {@code n! / (k! (n - k)!)}, 0 if {@code k < 0} or {@code k > n}
+     * @throws ArithmeticException if {@code n < 0}
+     */
+    public static BigInteger binomial(int n, int k) {
+        if (n < 0) {
+            throw new ArithmeticException("binomial of " + n);
+        } else if (k < 0 || k > n) {
+            return BigInteger.ZERO;
+        }
+        k = Math.min(k, n - k);
+        if (k == 0) {
+            return BigInteger.ONE;
+        }
+        LongProduct product = new LongProduct();
+        for (int p : n <= SEGMENT_SIZE ? primeList3(n) : primeListSegmented(n)) {
+            if (p > n) {
+                break;
+            }
+            int exponent = 0;
+            for (long q = p; q <= n; q *= p) {
+                exponent += (int) (n / q - k / q - (n - k) / q);
+            }
+            for (int i = 0; i < exponent; i++) {
+                product.multiply(p);
+            }
+        }
+        return product.result();
+    }
+
+    /**
+     * Collects factors in {@code long} values as long as they do not
+     * overflow and multiplies the collected values in a balanced product
+     * tree.
+     */
+    private static class LongProduct {
+
+        private long[] factors = new long[16];
+        private int size;
+        private long current = 1;
+
+        void multiply(long factor) {
+            if (current > Long.MAX_VALUE / factor) {
+                push();
+                current = factor;
+            } else {
+                current *= factor;
+            }
+        }
+
+        private void push() {
+            if (size == factors.length) {
+                factors = Arrays.copyOf(factors, 2 * size);
+            }
+            factors[size++] = current;
+        }
+
+        BigInteger result() {
+            push();
+            return product(factors, 0, size);
+        }
+
+        private static BigInteger product(long[] f, int from, int to) {
+            if (to - from == 1) {
+                return BigInteger.valueOf(f[from]);
+            } else if (to - from == 2) {
+                return BigInteger.valueOf(f[from]).multiply(BigInteger.valueOf(f[from + 1]));
+            }
+            int mid = (from + to) >>> 1;
+            return product(f, from, mid).multiply(product(f, mid, to));
         }
-        return val;
     }
 
     /**